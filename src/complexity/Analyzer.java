@@ -0,0 +1,331 @@
+package complexity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An Analyzer inspects a transition table without running it: it finds the states which are reachable from the initial state, and partitions them into classes of equivalent states.
+ * Every action is labelled by the configuration of its entry and by its position among the actions of the entry. The states are first grouped by the labels they have and by what their actions write and how they move, then the groups are refined with Hopcroft's algorithm until every label of the states of a group leads to the same group.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class Analyzer {
+    private final TransitionTable table;
+    /**
+     * The entries of the state <i>s</i> are the ones in byState[stateStart[s]] ... byState[stateStart[s+1]-1], ordered by configuration
+     */
+    private final int[] stateStart, byState;
+    /**
+     * Rank of the configuration of every entry among the configurations of all the entries
+     */
+    private final int[] keyRank;
+    private final boolean[] reachable;
+    /**
+     * The class of every state kept by the minimized table (the reachable states and the final states), UNDEFINED for the other ones
+     */
+    private final int[] classOf;
+    /**
+     * The state with the smallest id of every class
+     */
+    private final int[] representative;
+
+    /**
+     * Analyzes a transition table
+     * @param table the transition table
+     */
+    Analyzer(TransitionTable table) {
+        this.table = table;
+        int n = table.statesNumber(), entries = table.entryState.length;
+        long[] keys = table.entryKey.clone();
+        Arrays.sort(keys);
+        keyRank = new int[entries];
+        for(int e=0; e<entries; e++)
+            keyRank[e] = Arrays.binarySearch(keys, table.entryKey[e]);
+        stateStart = new int[n+1];
+        for(int s: table.entryState)
+            stateStart[s+1]++;
+        for(int s=0; s<n; s++)
+            stateStart[s+1] += stateStart[s];
+        long[] sorted = new long[entries];
+        int[] next = Arrays.copyOf(stateStart, n);
+        for(int e=0; e<entries; e++)
+            sorted[next[table.entryState[e]]++] = (long) keyRank[e] << 32 | e;
+        byState = new int[entries];
+        for(int s=0; s<n; s++) {
+            Arrays.sort(sorted, stateStart[s], stateStart[s+1]);
+            for(int i=stateStart[s]; i<stateStart[s+1]; i++)
+                byState[i] = (int) sorted[i];
+        }
+        reachable = reach();
+        classOf = new int[n];
+        Arrays.fill(classOf, TransitionTable.UNDEFINED);
+        int classes = partition();
+        representative = new int[classes];
+        Arrays.fill(representative, TransitionTable.UNDEFINED);
+        for(int s=0; s<n; s++)
+            if(classOf[s] != TransitionTable.UNDEFINED && representative[classOf[s]] == TransitionTable.UNDEFINED)
+                representative[classOf[s]] = s;
+    }
+
+    private boolean[] reach() {
+        boolean[] ret = new boolean[table.statesNumber()];
+        int[] queue = new int[ret.length];
+        int head = 0, tail = 0;
+        ret[table.initialState] = true;
+        queue[tail++] = table.initialState;
+        while(head < tail) {
+            int s = queue[head++];
+            if(table.finals[s] != null)
+                continue;
+            for(int i=stateStart[s]; i<stateStart[s+1]; i++) {
+                int e = byState[i];
+                for(int a=table.entryStart[e]; a<table.entryStart[e+1]; a++) {
+                    if(!ret[table.target[a]]) {
+                        ret[table.target[a]] = true;
+                        queue[tail++] = table.target[a];
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    private boolean kept(int s) {
+        return reachable[s] || table.finals[s] != null;
+    }
+
+    /**
+     * Checks if the rules of a state can be applied
+     */
+    private boolean live(int s) {
+        return reachable[s] && table.finals[s] == null && stateStart[s+1] > stateStart[s];
+    }
+
+    /**
+     * Partitions the kept states into classes of equivalent states
+     * @return the number of classes
+     */
+    private int partition() {
+        final int n = table.statesNumber(), tapesNumber = table.tapesNumber, actions = table.target.length;
+        Map<String, Integer> signatures = new HashMap<>();
+        int[] elems = new int[n], pos = new int[n], start = new int[n], end = new int[n], marked = new int[n];
+        int size = 0, blocks = 0;
+        StringBuilder sb = new StringBuilder();
+        for(int s=0; s<n; s++) {
+            if(!kept(s))
+                continue;
+            sb.setLength(0);
+            if(table.finals[s] != null || !live(s))
+                sb.append(table.finals[s] != null ? 'F' : 'U').append(table.states[s]);
+            else {
+                sb.append('D');
+                for(int i=stateStart[s]; i<stateStart[s+1]; i++) {
+                    int e = byState[i];
+                    sb.append(keyRank[e]).append('/').append(table.entryStart[e+1]-table.entryStart[e]).append(':');
+                    for(int a=table.entryStart[e]; a<table.entryStart[e+1]; a++)
+                        sb.append(table.write, a*tapesNumber, tapesNumber).append(table.direction, a*tapesNumber, tapesNumber);
+                    sb.append(';');
+                }
+            }
+            Integer b = signatures.get(sb.toString());
+            if(b == null)
+                signatures.put(sb.toString(), b = blocks++);
+            classOf[s] = b;
+            end[b]++;
+            size++;
+        }
+        for(int b=1; b<blocks; b++)
+            end[b] += end[b-1];
+        for(int s=n-1; s>=0; s--) {
+            if(classOf[s] != TransitionTable.UNDEFINED) {
+                pos[s] = --end[classOf[s]];
+                elems[pos[s]] = s;
+            }
+        }
+        for(int b=0; b<blocks; b++) {
+            start[b] = end[b];
+            end[b] = b+1 < blocks ? end[b+1] : size;
+        }
+        // the labels of the actions of the live states, and the actions grouped by target
+        long[] packed = new long[actions];
+        int[] source = new int[actions], inStart = new int[n+1];
+        int labelled = 0;
+        for(int s=0; s<n; s++) {
+            if(!live(s))
+                continue;
+            for(int i=stateStart[s]; i<stateStart[s+1]; i++) {
+                int e = byState[i];
+                for(int a=table.entryStart[e]; a<table.entryStart[e+1]; a++) {
+                    packed[labelled++] = (long) keyRank[e] << 32 | (a-table.entryStart[e]);
+                    source[a] = s;
+                    inStart[table.target[a]+1]++;
+                }
+            }
+        }
+        long[] distinct = Arrays.copyOf(packed, labelled);
+        Arrays.sort(distinct);
+        for(int t=0; t<n; t++)
+            inStart[t+1] += inStart[t];
+        int[] label = new int[actions], inAction = new int[inStart[n]];
+        int[] next = Arrays.copyOf(inStart, n);
+        for(int s=0; s<n; s++) {
+            if(!live(s))
+                continue;
+            for(int i=stateStart[s]; i<stateStart[s+1]; i++) {
+                int e = byState[i];
+                for(int a=table.entryStart[e]; a<table.entryStart[e+1]; a++) {
+                    label[a] = Arrays.binarySearch(distinct, (long) keyRank[e] << 32 | (a-table.entryStart[e]));
+                    inAction[next[table.target[a]]++] = a;
+                }
+            }
+        }
+        // Hopcroft's refinement: the predecessors of a splitter through a label are moved to the front of their classes, which are then split
+        int[] work = new int[n], touched = new int[n];
+        boolean[] inWork = new boolean[n];
+        int workSize = 0;
+        for(int b=0; b<blocks; b++) {
+            work[workSize++] = b;
+            inWork[b] = true;
+        }
+        long[] edges = new long[inAction.length];
+        while(workSize > 0) {
+            int c = work[--workSize];
+            inWork[c] = false;
+            int g = 0;
+            for(int i=start[c]; i<end[c]; i++)
+                for(int j=inStart[elems[i]]; j<inStart[elems[i]+1]; j++)
+                    edges[g++] = (long) label[inAction[j]] << 32 | source[inAction[j]];
+            Arrays.sort(edges, 0, g);
+            for(int i=0; i<g; ) {
+                int l = (int) (edges[i] >>> 32), touchedSize = 0;
+                for(; i<g && (int) (edges[i] >>> 32) == l; i++) {
+                    int s = (int) edges[i], b = classOf[s], m = start[b]+marked[b];
+                    if(pos[s] < m)
+                        continue;
+                    int other = elems[m];
+                    elems[m] = s;
+                    elems[pos[s]] = other;
+                    pos[other] = pos[s];
+                    pos[s] = m;
+                    if(marked[b]++ == 0)
+                        touched[touchedSize++] = b;
+                }
+                for(int k=0; k<touchedSize; k++) {
+                    int b = touched[k];
+                    if(marked[b] < end[b]-start[b]) {
+                        int nb = blocks++;
+                        start[nb] = start[b];
+                        end[nb] = start[b] + marked[b];
+                        start[b] = end[nb];
+                        for(int p=start[nb]; p<end[nb]; p++)
+                            classOf[elems[p]] = nb;
+                        int push = inWork[b] || end[nb]-start[nb] <= end[b]-start[b] ? nb : b;
+                        work[workSize++] = push;
+                        inWork[push] = true;
+                    }
+                    marked[b] = 0;
+                }
+            }
+        }
+        return blocks;
+    }
+
+    private int minimizedId(int s, int[] newId) {
+        return newId[representative[classOf[s]]];
+    }
+
+    /**
+     * Builds the minimized transition table: the unreachable states and the rules which can never be applied are removed, and every class of equivalent states is replaced by the state of the class with the smallest id
+     * @return the minimized transition table
+     */
+    TransitionTable minimized() {
+        final int n = table.statesNumber(), tapesNumber = table.tapesNumber;
+        int[] newId = new int[n];
+        List<String> states = new ArrayList<>();
+        for(int s=0; s<n; s++) {
+            if(classOf[s] != TransitionTable.UNDEFINED && representative[classOf[s]] == s) {
+                newId[s] = states.size();
+                states.add(table.states[s]);
+            }
+        }
+        int entries = 0, actions = 0;
+        for(int e=0; e<table.entryState.length; e++) {
+            int s = table.entryState[e];
+            if(live(s) && representative[classOf[s]] == s) {
+                entries++;
+                actions += table.entryStart[e+1]-table.entryStart[e];
+            }
+        }
+        int[] entryState = new int[entries], entryStart = new int[entries+1], target = new int[actions];
+        long[] entryKey = new long[entries];
+        char[] write = new char[actions*tapesNumber], direction = new char[actions*tapesNumber];
+        int ne = 0, na = 0;
+        for(int e=0; e<table.entryState.length; e++) {
+            int s = table.entryState[e];
+            if(!live(s) || representative[classOf[s]] != s)
+                continue;
+            entryState[ne] = newId[s];
+            entryKey[ne] = table.entryKey[e];
+            for(int a=table.entryStart[e]; a<table.entryStart[e+1]; a++, na++) {
+                target[na] = minimizedId(table.target[a], newId);
+                System.arraycopy(table.write, a*tapesNumber, write, na*tapesNumber, tapesNumber);
+                System.arraycopy(table.direction, a*tapesNumber, direction, na*tapesNumber, tapesNumber);
+            }
+            entryStart[++ne] = na;
+        }
+        return new TransitionTable(tapesNumber, minimizedId(table.initialState, newId), states.toArray(new String[states.size()]), table.symbols, entryState, entryKey, entryStart, target, write, direction);
+    }
+
+    /**
+     * Describes the analyzed transition table
+     * @return the analysis of the transition table
+     */
+    ProgramAnalysis analysis() {
+        final int n = table.statesNumber(), tapesNumber = table.tapesNumber;
+        long configurations = 1;
+        for(int m=0; m<tapesNumber; m++)
+            configurations *= table.symbols.length;
+        List<String> unreachable = new ArrayList<>(), undefined = new ArrayList<>(), deterministic = new ArrayList<>(), nonDeterministic = new ArrayList<>();
+        List<String> deadRules = new ArrayList<>(), invalidRules = new ArrayList<>();
+        Map<String, Long> missing = new LinkedHashMap<>();
+        Map<String, String> equivalent = new LinkedHashMap<>();
+        for(int s=0; s<n; s++) {
+            boolean defined = stateStart[s+1] > stateStart[s];
+            if(!live(s)) {
+                if(defined && table.finals[s] == null)
+                    unreachable.add(table.states[s]);
+                else if(reachable[s] && table.finals[s] == null)
+                    undefined.add(table.states[s]);
+                for(int i=stateStart[s]; i<stateStart[s+1]; i++)
+                    for(int a=table.entryStart[byState[i]]; a<table.entryStart[byState[i]+1]; a++)
+                        deadRules.add(table.rule(a));
+                continue;
+            }
+            boolean forks = false;
+            for(int i=stateStart[s]; i<stateStart[s+1]; i++)
+                forks |= table.entryStart[byState[i]+1]-table.entryStart[byState[i]] > 1;
+            (forks ? nonDeterministic : deterministic).add(table.states[s]);
+            long undefinedConfigurations = configurations - (stateStart[s+1]-stateStart[s]);
+            if(undefinedConfigurations > 0)
+                missing.put(table.states[s], undefinedConfigurations);
+            if(representative[classOf[s]] != s)
+                equivalent.put(table.states[s], table.states[representative[classOf[s]]]);
+        }
+        for(int a=0; a<table.target.length; a++) {
+            for(int m=0; m<tapesNumber; m++) {
+                if(table.move[a*tapesNumber+m] == TransitionTable.MOVE_INVALID) {
+                    invalidRules.add(table.rule(a));
+                    break;
+                }
+            }
+        }
+        return new ProgramAnalysis(unreachable, undefined, deterministic, nonDeterministic, missing, deadRules, invalidRules, equivalent);
+    }
+}
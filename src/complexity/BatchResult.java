@@ -0,0 +1,75 @@
+package complexity;
+
+import complexity.Turing.Output;
+import complexity.Turing.TuringException;
+import java.util.List;
+
+/**
+ * A BatchResult is the result of the simulation of one of the inputs of a batch.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public final class BatchResult {
+    private final long index;
+    private final String input;
+    private final RunResult result;
+    private final TuringException error;
+
+    BatchResult(long index, String input, RunResult result, TuringException error) {
+        this.index = index;
+        this.input = input;
+        this.result = result;
+        this.error = error;
+    }
+
+    /**
+     * Gets the position of the input in the batch
+     * @return the 0-based index of the input
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the input of the simulation
+     * @return the input without initial symbol
+     */
+    public String getInput() {
+        return input;
+    }
+
+    /**
+     * Gets the result of the simulation
+     * @return the result of the simulation, null if the simulation failed
+     */
+    public RunResult getResult() {
+        return result;
+    }
+
+    /**
+     * Gets the outputs of the simulation
+     * @return a list of all the outputs of the simulation
+     * @throws TuringException if the simulation failed
+     */
+    public List<Output> getOutputs() throws TuringException {
+        if(error != null)
+            throw error;
+        return result.getOutputs();
+    }
+
+    /**
+     * Gets the exception which made the simulation fail
+     * @return the exception which made the simulation fail, null if the simulation succeeded
+     */
+    public TuringException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return index + ": " + input + " -> " + (error != null ? error : result);
+    }
+}
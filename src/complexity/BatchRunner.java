@@ -0,0 +1,142 @@
+package complexity;
+
+import complexity.Turing.TuringException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A BatchRunner simulates a Turing machine on the inputs of an iterator, on the threads of a ForkJoinPool.
+ * It keeps a bounded window of simulations in flight: new inputs are consumed only as results are taken, so neither the inputs nor the results are ever held all in memory.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class BatchRunner implements Iterator<BatchResult> {
+    /**
+     * Number of simulations in flight for each thread of the pool
+     */
+    private static final int WINDOW_PER_THREAD = 4;
+    private final Turing machine;
+    private final Iterator<String> inputs;
+    private final RunOptions options;
+    private final ForkJoinPool pool;
+    private final boolean ordered;
+    private final int window;
+    private final ThreadLocal<Scratch> scratch;
+    private final Deque<ForkJoinTask<BatchResult>> inFlight = new ArrayDeque<>();
+    private final BlockingQueue<Completion> completed = new LinkedBlockingQueue<>();
+    private int outstanding;
+    private long nextIndex;
+    private volatile boolean closed;
+
+    BatchRunner(Turing machine, Iterator<String> inputs, RunOptions options, ForkJoinPool pool, boolean ordered) {
+        this.machine = machine;
+        this.inputs = inputs;
+        this.options = options;
+        this.pool = pool;
+        this.ordered = ordered;
+        this.window = pool.getParallelism()*WINDOW_PER_THREAD;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(machine.getTapesNumber()));
+    }
+
+    /**
+     * A simulation which has completed in unordered mode: its result, or what it has thrown
+     */
+    private static final class Completion {
+        final BatchResult result;
+        final Throwable failure;
+
+        Completion(BatchResult result, Throwable failure) {
+            this.result = result;
+            this.failure = failure;
+        }
+
+        BatchResult get() {
+            if(failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if(failure instanceof Error)
+                throw (Error) failure;
+            if(failure != null)
+                throw new IllegalStateException(failure);
+            return result;
+        }
+    }
+
+    private void fill() {
+        while(!closed && outstanding < window && inputs.hasNext()) {
+            final long index = nextIndex++;
+            final String input = inputs.next();
+            ForkJoinTask<BatchResult> task = pool.submit(() -> {
+                BatchResult r;
+                try {
+                    r = run(index, input);
+                } catch(Throwable t) {
+                    if(!ordered)
+                        completed.add(new Completion(null, t));
+                    throw t;
+                }
+                if(!ordered)
+                    completed.add(new Completion(r, null));
+                return r;
+            });
+            if(ordered)
+                inFlight.add(task);
+            outstanding++;
+        }
+    }
+
+    private BatchResult run(long index, String input) {
+        if(closed)
+            return new BatchResult(index, input, null, new TuringException("The batch has been closed"));
+        try {
+            return new BatchResult(index, input, machine.simulate(input, options, scratch.get()), null);
+        } catch(TuringException e) {
+            return new BatchResult(index, input, null, e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return outstanding > 0;
+    }
+
+    @Override
+    public BatchResult next() {
+        if(!hasNext())
+            throw new NoSuchElementException();
+        BatchResult r;
+        if(ordered) {
+            ForkJoinTask<BatchResult> task = inFlight.poll();
+            outstanding--;
+            r = task.join();
+        } else {
+            Completion c;
+            try {
+                c = completed.take();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            outstanding--;
+            r = c.get();
+        }
+        fill();
+        return r;
+    }
+
+    /**
+     * Stops consuming the inputs: the simulations in flight which have not started yet are skipped
+     */
+    void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,78 @@
+package complexity;
+
+import java.util.Arrays;
+
+/**
+ * A Branch is a branch of the computation tree which has not been explored yet.
+ * It resumes from a configuration, possibly by applying one of the transitions of a non-deterministic step which has already been read.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public final class Branch {
+    /**
+     * Action of a branch which has no pending transition
+     */
+    static final int NONE = -1;
+    /**
+     * Rank of a branch which no best-first executor has ranked, and of the branch which a best-first executor was exploring
+     */
+    static final long UNRANKED = -1, CURRENT = -2;
+    final TransitionTable table;
+    final Configuration configuration;
+    final int action;
+    /**
+     * The order in which a best-first executor has created the branch, which breaks the ties of the scores, or UNRANKED, or CURRENT
+     */
+    final long rank;
+
+    Branch(TransitionTable table, Configuration configuration, int action) {
+        this(table, configuration, action, UNRANKED);
+    }
+
+    Branch(TransitionTable table, Configuration configuration, int action, long rank) {
+        this.table = table;
+        this.configuration = configuration;
+        this.action = action;
+        this.rank = rank;
+    }
+
+    /**
+     * Gets the state of the configuration from which the branch resumes
+     * @return the name of the state
+     */
+    public String getState() {
+        return table.states[configuration.state];
+    }
+
+    /**
+     * Gets the content of the tapes of the configuration from which the branch resumes
+     * @return the content of all the tapes
+     */
+    public String[] getTapes() {
+        return configuration.snapshot();
+    }
+
+    /**
+     * Gets the position of the heads of the configuration from which the branch resumes
+     * @return the position of all the heads
+     */
+    public int[] getHeads() {
+        return configuration.heads.clone();
+    }
+
+    /**
+     * Checks if the branch resumes by applying a transition which has already been chosen
+     * @return true if a transition is pending, false otherwise
+     */
+    public boolean hasPendingTransition() {
+        return action != NONE;
+    }
+
+    @Override
+    public String toString() {
+        return "{\n\tState: " + getState() + (hasPendingTransition() ? " (pending transition)" : "") + ",\n\t" + Arrays.toString(getTapes()) + "\n}";
+    }
+}
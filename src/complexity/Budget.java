@@ -0,0 +1,220 @@
+package complexity;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A Budget enforces the limits of a simulation and tells all its executors when they must stop.
+ * Executors acquire steps in chunks, so the step counter is not touched at every transition.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class Budget {
+    private final long maxSteps;
+    private final long deadline;
+    private final long maxBranches;
+    private final int maxTapeLength;
+    private final boolean stopOnCycle;
+    private final AtomicLong steps = new AtomicLong();
+    private final AtomicLong branches = new AtomicLong();
+    private final AtomicReference<RunResult.Status> status = new AtomicReference<>();
+    private volatile boolean stopped;
+    /**
+     * True if some branch has reached a final state
+     */
+    private volatile boolean halted;
+    /**
+     * The cycle of the first branch found to loop
+     */
+    private volatile long cycleEntry = -1, cycleLength = -1;
+
+    /**
+     * Creates the budget of a simulation, starting its clock
+     * @param options the options of the simulation
+     * @param branches the number of live branches when the simulation starts
+     */
+    Budget(RunOptions options, long branches) {
+        this.maxSteps = options.getMaxSteps();
+        long timeLimit = options.getTimeLimit(TimeUnit.NANOSECONDS);
+        this.deadline = timeLimit == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + timeLimit;
+        this.maxBranches = options.getMaxBranches();
+        this.maxTapeLength = options.getMaxTapeLength();
+        this.stopOnCycle = options.isStopOnCycle();
+        this.branches.set(branches);
+    }
+
+    /**
+     * Acquires some steps
+     * @param wanted the number of wanted steps
+     * @return the number of granted steps, 0 if the step limit has been reached (then the simulation is stopped)
+     */
+    long acquire(long wanted) {
+        while(true) {
+            long s = steps.get();
+            long granted = Long.min(wanted, maxSteps - s);
+            if(granted <= 0) {
+                stop(RunResult.Status.STEP_LIMIT);
+                return 0;
+            }
+            if(steps.compareAndSet(s, s+granted))
+                return granted;
+        }
+    }
+
+    /**
+     * Gives back the acquired steps which have not been used
+     * @param unused the number of unused steps
+     */
+    void release(long unused) {
+        if(unused > 0)
+            steps.addAndGet(-unused);
+    }
+
+    /**
+     * Gets the number of steps acquired and not given back
+     * @return the number of executed steps
+     */
+    long steps() {
+        return steps.get();
+    }
+
+    /**
+     * Checks the deadline, stopping the simulation if it has passed
+     * @return true if the deadline has passed, false otherwise
+     */
+    boolean expired() {
+        if(deadline == Long.MAX_VALUE || System.nanoTime() - deadline < 0)
+            return false;
+        stop(RunResult.Status.TIME_LIMIT);
+        return true;
+    }
+
+    /**
+     * Checks if a configuration is about to read beyond the maximum length of a tape, stopping the simulation if so
+     * @param c the configuration
+     * @return true if a head of <i>c</i> is beyond the maximum length of its tape, false otherwise
+     */
+    boolean exceedsTape(Configuration c) {
+        if(maxTapeLength == Integer.MAX_VALUE)
+            return false;
+        for(int head: c.heads) {
+            if(head >= maxTapeLength) {
+                stop(RunResult.Status.TAPE_LIMIT);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records new live branches, stopping the simulation if there are too many
+     * @param n the number of new branches
+     */
+    void fork(int n) {
+        if(maxBranches != Long.MAX_VALUE && branches.addAndGet(n) > maxBranches)
+            stop(RunResult.Status.BRANCH_LIMIT);
+    }
+
+    /**
+     * Records the end of a live branch
+     */
+    void end() {
+        if(maxBranches != Long.MAX_VALUE)
+            branches.decrementAndGet();
+    }
+
+    /**
+     * Stops the simulation
+     * @param reason why the simulation is stopped
+     */
+    void stop(RunResult.Status reason) {
+        status.compareAndSet(null, reason);
+        stopped = true;
+    }
+
+    /**
+     * Records that a branch loops forever, unless the simulation has already been stopped: the first cycle found is kept, and the simulation is stopped with status LOOP if its options ask for it
+     * @param entry the number of steps after which the branch reaches its cycle
+     * @param length the number of steps of the cycle
+     */
+    synchronized void loop(long entry, long length) {
+        if(status.get() != null)
+            return;
+        if(cycleEntry < 0) {
+            cycleEntry = entry;
+            cycleLength = length;
+        }
+        if(stopOnCycle)
+            stop(RunResult.Status.LOOP);
+    }
+
+    /**
+     * Records that a branch has reached a final state
+     */
+    void halt() {
+        if(!halted)
+            halted = true;
+    }
+
+    /**
+     * Carries over what the part of a resumed simulation which has already been run has found
+     * @param cycleEntry the entry step of the first cycle found, -1 if no branch has been found to loop
+     * @param cycleLength the length of the first cycle found, -1 if no branch has been found to loop
+     * @param halted true if some branch has reached a final state
+     */
+    synchronized void resume(long cycleEntry, long cycleLength, boolean halted) {
+        if(this.cycleEntry < 0) {
+            this.cycleEntry = cycleEntry;
+            this.cycleLength = cycleLength;
+        }
+        if(halted)
+            this.halted = true;
+    }
+
+    /**
+     * Checks if some branch has reached a final state
+     * @return true if some branch has reached a final state, false otherwise
+     */
+    boolean halted() {
+        return halted;
+    }
+
+    /**
+     * Gets the step at which the first looping branch reaches its cycle
+     * @return the entry step of the cycle, -1 if no branch loops
+     */
+    long cycleEntry() {
+        return cycleEntry;
+    }
+
+    /**
+     * Gets the number of steps of the cycle of the first looping branch
+     * @return the length of the cycle, -1 if no branch loops
+     */
+    long cycleLength() {
+        return cycleLength;
+    }
+
+    /**
+     * Checks if the simulation has been stopped
+     * @return true if the simulation has been stopped, false otherwise
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Gets why the simulation has been stopped
+     * @return why the simulation has been stopped; if it has not, LOOP if some branch loops and no branch has reached a final state, COMPLETE otherwise
+     */
+    RunResult.Status status() {
+        RunResult.Status s = status.get();
+        if(s != null)
+            return s;
+        return cycleEntry >= 0 && !halted ? RunResult.Status.LOOP : RunResult.Status.COMPLETE;
+    }
+}
@@ -0,0 +1,403 @@
+package complexity;
+
+import complexity.Turing.FINAL_STATE;
+import complexity.Turing.Output;
+import complexity.Turing.TuringException;
+import complexity.datastructure.Tape;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A Checkpoint periodically saves the whole state of a sequential simulation, so that it can be resumed by {@link Turing#resume(Path, RunOptions)} after the JVM has been stopped.
+ * A checkpoint is made of two files:
+ * <ul>
+ * <li>the state file, which is replaced atomically at every checkpoint: it is written to a temporary file in the same directory, named after it with the <code>.tmp</code> suffix, forced to the disk and moved over the previous one;</li>
+ * <li>the outputs file, named after the state file with the <code>.outputs</code> suffix, to which only the outputs found since the previous checkpoint are appended, before the state file is replaced</li>
+ * </ul>
+ * The state file records how many outputs, and how many bytes of the outputs file, belong to the checkpoint, so the outputs appended by a checkpoint which has not been completed are ignored.
+ * Only the outputs are written incrementally: the state file is rewritten whole, so its cost grows with the frontier, the tapes and the executed configurations, and the time between two checkpoints is stretched to at least COST_RATIO times the time the previous one took.
+ * <p>
+ * The state file starts with a header (magic number, format version, length of the body, CRC32 of the body), followed by the body, in big-endian order:
+ * <ul>
+ * <li>checksum of the program, number of tapes, executed steps;</li>
+ * <li>entry and length of the first cycle found, and whether some branch has reached a final state;</li>
+ * <li>number of outputs and length of the outputs file;</li>
+ * <li>the frontier: pending action, rank, depth, state id, tapes and heads of every branch, in the order in which it would have been explored;</li>
+ * <li>the executed configurations of an optimized simulation, if any</li>
+ * </ul>
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class Checkpoint {
+    private static final int MAGIC = 0x54555243;
+    private static final int VERSION = 4;
+    private static final int HEADER = 4 + 4 + 8 + 4;
+    private static final int BUFFER = 1 << 16;
+    private static final String OUTPUTS = ".outputs", TEMPORARY = ".tmp";
+    /**
+     * Minimum ratio between the time spent simulating and the time spent writing the previous checkpoint, so that checkpoints never take more than a tenth of the run
+     */
+    private static final int COST_RATIO = 9;
+    private final Path path, outputsPath;
+    private final long interval;
+    private final TransitionTable table;
+    private final int program;
+    private final List<Output> outputs;
+    private final long steps;
+    private int written;
+    private long outputsLength;
+    private long next;
+
+    private Checkpoint(Path path, long interval, TransitionTable table, int program, List<Output> outputs, long steps) {
+        this.path = path.toAbsolutePath().normalize();
+        this.outputsPath = this.path.resolveSibling(this.path.getFileName() + OUTPUTS);
+        this.interval = interval;
+        this.table = table;
+        this.program = program;
+        this.outputs = outputs;
+        this.steps = steps;
+        schedule(0);
+    }
+
+    /**
+     * Schedules the next checkpoint after the interval, or after COST_RATIO times the cost of the previous checkpoint if it is longer
+     * @param cost the time taken by the previous checkpoint
+     */
+    private void schedule(long cost) {
+        next = interval == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + Long.max(interval, cost*COST_RATIO);
+    }
+
+    /**
+     * Creates the checkpoints of a simulation, if its options ask for them
+     * @param options the options of the simulation
+     * @param table the transition table of the Turing machine
+     * @param outputs the list where the simulation collects its outputs
+     * @param steps the number of steps executed before the simulation, if it resumes another one
+     * @param resumed the checkpoint from which the simulation resumes, or null: if the simulation checkpoints to the same file, the outputs already written are not written again
+     * @return the checkpoints of the simulation, or null if the simulation is not checkpointed
+     * @throws IllegalArgumentException if the simulation is parallel or iterative deepening
+     */
+    static Checkpoint of(RunOptions options, TransitionTable table, List<Output> outputs, long steps, Saved resumed) {
+        if(options.getCheckpoint() == null)
+            return null;
+        if(options.isParallel())
+            throw new IllegalArgumentException("A parallel simulation cannot be checkpointed");
+        if(options.getStrategy().kind == Strategy.ITERATIVE_DEEPENING)
+            throw new IllegalArgumentException("An iterative deepening simulation cannot be checkpointed");
+        int program;
+        try {
+            program = resumed == null ? MachineFile.checksum(table) : resumed.program;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Checkpoint ret = new Checkpoint(options.getCheckpoint(), options.getCheckpointInterval(TimeUnit.NANOSECONDS), table, program, outputs, steps);
+        if(resumed != null && resumed.path.equals(ret.path)) {
+            ret.written = resumed.outputs.size();
+            ret.outputsLength = resumed.outputsLength;
+        }
+        return ret;
+    }
+
+    /**
+     * Checks if the interval since the previous checkpoint has passed
+     * @return true if a checkpoint is due, false otherwise
+     */
+    boolean isDue() {
+        return next != Long.MAX_VALUE && System.nanoTime() - next >= 0;
+    }
+
+    /**
+     * Writes a checkpoint: appends the new outputs to the outputs file, then replaces the state file
+     * @param frontier the branches which have not been explored yet, in the order in which they would be explored
+     * @param executed the number of steps executed by the simulation
+     * @param budget the budget of the simulation, which tells the cycles and the final states found
+     * @param yetExecuted the executed configurations, or null if the simulation is not optimized
+     * @throws UncheckedIOException if the checkpoint cannot be written
+     */
+    void write(List<Branch> frontier, long executed, Budget budget, VisitedStore yetExecuted) {
+        long start = System.nanoTime();
+        try {
+            appendOutputs();
+            writeState(frontier, steps + executed, budget, yetExecuted);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        schedule(System.nanoTime() - start);
+    }
+
+    private void appendOutputs() throws IOException {
+        try(FileChannel channel = FileChannel.open(outputsPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(outputsLength);
+            channel.position(outputsLength);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER));
+            int size = outputs.size();
+            for(int i=written; i<size; i++)
+                writeOutput(out, outputs.get(i));
+            out.flush();
+            channel.force(false);
+            outputsLength = channel.position();
+            written = size;
+        }
+    }
+
+    private void writeState(List<Branch> frontier, long totalSteps, Budget budget, VisitedStore yetExecuted) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + TEMPORARY);
+        try {
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.position(HEADER);
+                CRC32 crc = new CRC32();
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER), crc));
+                out.writeInt(program);
+                out.writeInt(table.tapesNumber);
+                out.writeLong(totalSteps);
+                out.writeLong(budget.cycleEntry());
+                out.writeLong(budget.cycleLength());
+                out.writeBoolean(budget.halted());
+                out.writeInt(written);
+                out.writeLong(outputsLength);
+                out.writeInt(frontier.size());
+                for(Branch b: frontier) {
+                    Configuration c = b.configuration;
+                    out.writeInt(b.action);
+                    out.writeLong(b.rank);
+                    out.writeLong(c.depth);
+                    writeConfiguration(out, c.state, c.tapes, c.heads);
+                }
+                out.writeBoolean(yetExecuted != null);
+                if(yetExecuted != null)
+                    yetExecuted.write(out);
+                out.flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).putInt(VERSION).putLong(channel.position() - HEADER).putInt((int) crc.getValue());
+                header.flip();
+                for(long p=0; header.hasRemaining(); )
+                    p += channel.write(header, p);
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads the last checkpoint written to a file
+     * @param path the path of the state file
+     * @param table the transition table of the Turing machine which resumes the simulation
+     * @param blankSymbol the blank symbol of the tapes
+     * @param concurrent true if the executed configurations will be shared by several threads, false otherwise
+     * @return the saved simulation
+     * @throws IOException
+     * @throws TuringException if the files are not a checkpoint, they have been written by an unsupported version or they are corrupted
+     * @throws IllegalArgumentException if the checkpoint has not been written by a Turing machine with the same program
+     */
+    static Saved read(Path path, TransitionTable table, char blankSymbol, boolean concurrent) throws IOException, TuringException {
+        path = path.toAbsolutePath().normalize();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while(header.hasRemaining() && channel.read(header) >= 0);
+            header.flip();
+            if(header.remaining() < HEADER || header.getInt() != MAGIC)
+                throw new TuringException("Malformed checkpoint: it is not a checkpoint");
+            int version = header.getInt();
+            if(version != VERSION)
+                throw new TuringException("Malformed checkpoint: unsupported version " + version);
+            long size = header.getLong();
+            int checksum = header.getInt();
+            if(size != channel.size() - HEADER)
+                throw new TuringException("Malformed checkpoint: the file is truncated");
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+            while(channel.read(buffer) > 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+            if((int) crc.getValue() != checksum)
+                throw new TuringException("Malformed checkpoint: wrong checksum");
+            channel.position(HEADER);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER));
+            int program = in.readInt();
+            if(program != MachineFile.checksum(table) || in.readInt() != table.tapesNumber)
+                throw new IllegalArgumentException("The checkpoint has not been written by this Turing machine");
+            long steps = in.readLong();
+            long cycleEntry = in.readLong(), cycleLength = in.readLong();
+            boolean halted = in.readBoolean();
+            int outputsNumber = in.readInt();
+            long outputsLength = in.readLong();
+            if(outputsNumber < 0 || outputsLength < 0 || cycleEntry < -1 || cycleLength < -1)
+                throw new TuringException("Malformed checkpoint: inconsistent content");
+            List<Branch> frontier = new ArrayList<>();
+            for(int n=in.readInt(); n>0; n--) {
+                int action = in.readInt();
+                long rank = in.readLong();
+                long depth = in.readLong();
+                int state = in.readInt();
+                Tape[] tapes = readTapes(in, blankSymbol);
+                int[] heads = readHeads(in, tapes.length);
+                if(state < 0 || state >= table.statesNumber() || action < Branch.NONE || action >= table.target.length || rank < Branch.CURRENT || tapes.length != table.tapesNumber || Arrays.stream(heads).anyMatch((h) -> h < 0))
+                    throw new TuringException("Malformed checkpoint: inconsistent content");
+                Configuration c = new Configuration(state, tapes, heads);
+                c.depth = depth;
+                frontier.add(new Branch(table, c, action, rank));
+            }
+            VisitedStore yetExecuted = in.readBoolean() ? VisitedStore.read(in, blankSymbol, concurrent) : null;
+            List<Output> outputs = readOutputs(path.resolveSibling(path.getFileName() + OUTPUTS), outputsNumber, outputsLength);
+            return new Saved(path, program, steps, cycleEntry, cycleLength, halted, outputs, outputsLength, frontier, yetExecuted);
+        } catch(EOFException | IllegalStateException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new TuringException("Malformed checkpoint: inconsistent content");
+        }
+    }
+
+    private static List<Output> readOutputs(Path path, int number, long length) throws IOException, TuringException {
+        List<Output> ret = new ArrayList<>();
+        if(number == 0)
+            return ret;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() < length)
+                throw new TuringException("Malformed checkpoint: the outputs are truncated");
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER));
+            for(int i=0; i<number; i++)
+                ret.add(readOutput(in));
+        }
+        return ret;
+    }
+
+    private static void writeOutput(DataOutput out, Output o) throws IOException {
+        out.writeByte(o.state.ordinal());
+        out.writeInt(o.tapes == null ? -1 : o.tapes.length);
+        if(o.tapes != null)
+            for(String t: o.tapes)
+                writeString(out, t);
+        out.writeInt(o.heads == null ? -1 : o.heads.length);
+        if(o.heads != null)
+            for(int h: o.heads)
+                out.writeInt(h);
+    }
+
+    private static Output readOutput(DataInput in) throws IOException {
+        FINAL_STATE state = FINAL_STATE.values()[in.readByte()];
+        int n = in.readInt();
+        String[] tapes = n < 0 ? null : new String[n];
+        for(int i=0; i<n; i++)
+            tapes[i] = readString(in);
+        n = in.readInt();
+        int[] heads = n < 0 ? null : new int[n];
+        for(int i=0; i<n; i++)
+            heads[i] = in.readInt();
+        return new Output(state, tapes, heads);
+    }
+
+    /**
+     * Writes the state, the tapes and the heads of a configuration
+     * @param out the output
+     * @param state the state id
+     * @param tapes the tapes
+     * @param heads the positions of the heads
+     * @throws IOException
+     */
+    static void writeConfiguration(DataOutput out, int state, Tape[] tapes, int[] heads) throws IOException {
+        out.writeInt(state);
+        out.writeInt(tapes.length);
+        for(Tape t: tapes)
+            writeString(out, t.toString());
+        for(int h: heads)
+            out.writeInt(h);
+    }
+
+    /**
+     * Reads the tapes of a configuration written by {@link #writeConfiguration(DataOutput, int, Tape[], int[])}, after its state
+     * @param in the input
+     * @param blankSymbol the blank symbol of the tapes
+     * @return the tapes
+     * @throws IOException
+     */
+    static Tape[] readTapes(DataInput in, char blankSymbol) throws IOException {
+        Tape[] ret = new Tape[in.readInt()];
+        for(int i=0; i<ret.length; i++)
+            ret[i] = new Tape(blankSymbol, readString(in));
+        return ret;
+    }
+
+    /**
+     * Reads the heads of a configuration written by {@link #writeConfiguration(DataOutput, int, Tape[], int[])}, after its tapes
+     * @param in the input
+     * @param tapesNumber the number of tapes
+     * @return the positions of the heads
+     * @throws IOException
+     */
+    static int[] readHeads(DataInput in, int tapesNumber) throws IOException {
+        int[] ret = new int[tapesNumber];
+        for(int i=0; i<ret.length; i++)
+            ret[i] = in.readInt();
+        return ret;
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        char[] ret = new char[in.readInt()];
+        for(int i=0; i<ret.length; i++)
+            ret[i] = in.readChar();
+        return new String(ret);
+    }
+
+    /**
+     * A Saved simulation is what a checkpoint file holds
+     */
+    static final class Saved {
+        final Path path;
+        final int program;
+        final long steps;
+        final long cycleEntry, cycleLength;
+        final boolean halted;
+        final List<Output> outputs;
+        final long outputsLength;
+        final List<Branch> frontier;
+        final VisitedStore yetExecuted;
+
+        private Saved(Path path, int program, long steps, long cycleEntry, long cycleLength, boolean halted, List<Output> outputs, long outputsLength, List<Branch> frontier, VisitedStore yetExecuted) {
+            this.path = path;
+            this.program = program;
+            this.steps = steps;
+            this.cycleEntry = cycleEntry;
+            this.cycleLength = cycleLength;
+            this.halted = halted;
+            this.outputs = outputs;
+            this.outputsLength = outputsLength;
+            this.frontier = frontier;
+            this.yetExecuted = yetExecuted;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package complexity;
+
+import complexity.datastructure.Tape;
+import java.util.Arrays;
+
+/**
+ * A Configuration is the complete instantaneous description of a Turing machine: its current state, the content of all the tapes and the position of all the heads.
+ * A configuration is mutable: a simulation advances it in place as long as the machine behaves deterministically.
+ * <p>
+ * A configuration may keep a 128-bit fingerprint of itself. The fingerprint is a sum of independent pseudo-random terms, one for the state, one for each head position, one for each tape length and one for each cell, so it is updated in O(1) time by every write, head move, tape extension and state change instead of being recomputed.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class Configuration {
+    private static final long HIGH_SEED = 0x243F6A8885A308D3L, LOW_SEED = 0x13198A2E03707344L;
+    private static final long STATE_TERM = 1, HEAD_TERM = 2, LENGTH_TERM = 3, CELL_TERM = 4;
+    int state;
+    /**
+     * Number of transitions applied since the initial configuration
+     */
+    long depth;
+    final Tape[] tapes;
+    final int[] heads;
+    private boolean hashed;
+    private long hashHigh, hashLow;
+
+    Configuration(int state, Tape[] tapes, int[] heads) {
+        this.state = state;
+        this.tapes = tapes;
+        this.heads = heads;
+    }
+
+    /**
+     * Creates an independent copy of this configuration.
+     * The copy shares the content of the tapes with this configuration until either of them writes on a tape
+     * @return a copy of this configuration
+     */
+    Configuration copy() {
+        Tape[] newTapes = new Tape[tapes.length];
+        for(int i=0; i<tapes.length; i++)
+            newTapes[i] = tapes[i].share();
+        Configuration c = new Configuration(state, newTapes, heads.clone());
+        c.depth = depth;
+        c.hashed = hashed;
+        c.hashHigh = hashHigh;
+        c.hashLow = hashLow;
+        return c;
+    }
+
+    /**
+     * Checks if another configuration has the same state, heads and tapes of this one, at any depth
+     * @param c the other configuration
+     * @return true if the two configurations are the same, false otherwise
+     */
+    boolean sameAs(Configuration c) {
+        if(state != c.state || !Arrays.equals(heads, c.heads))
+            return false;
+        for(int m=0; m<tapes.length; m++)
+            if(!tapes[m].equals(c.tapes[m]))
+                return false;
+        return true;
+    }
+
+    /**
+     * Takes a snapshot of the content of all the tapes
+     * @return the content of all the tapes
+     */
+    String[] snapshot() {
+        String[] ret = new String[tapes.length];
+        for(int i=0; i<tapes.length; i++)
+            ret[i] = tapes[i].toString();
+        return ret;
+    }
+
+    /**
+     * Freezes the content of all the tapes in O(1) time per tape.
+     * The frozen tapes share their pages with this configuration, which copies a page before writing on it again
+     * @return tapes with the current content of all the tapes, which are never written
+     */
+    Tape[] freeze() {
+        Tape[] ret = new Tape[tapes.length];
+        for(int i=0; i<tapes.length; i++)
+            ret[i] = tapes[i].share();
+        return ret;
+    }
+
+    /**
+     * Reads the symbol under the head of a tape
+     * @param m index of the tape
+     * @return the symbol under the head of the tape
+     */
+    char read(int m) {
+        Tape t = tapes[m];
+        int length = t.length();
+        char c = t.read(heads[m]);
+        if(hashed && t.length() != length) {
+            for(int p=length; p<t.length(); p++)
+                addTerm(CELL_TERM, m, p, t.read(p), 1);
+            addTerm(LENGTH_TERM, m, length, 0, -1);
+            addTerm(LENGTH_TERM, m, t.length(), 0, 1);
+        }
+        return c;
+    }
+
+    /**
+     * Writes a symbol under the head of a tape which has already been read
+     * @param m index of the tape
+     * @param c the symbol to be written
+     */
+    void write(int m, char c) {
+        Tape t = tapes[m];
+        if(hashed) {
+            char old = t.read(heads[m]);
+            if(old == c)
+                return;
+            addTerm(CELL_TERM, m, heads[m], old, -1);
+            addTerm(CELL_TERM, m, heads[m], c, 1);
+        }
+        t.write(heads[m], c);
+    }
+
+    /**
+     * Moves the head of a tape
+     * @param m index of the tape
+     * @param delta the displacement of the head
+     */
+    void move(int m, int delta) {
+        if(hashed) {
+            addTerm(HEAD_TERM, m, heads[m], 0, -1);
+            addTerm(HEAD_TERM, m, heads[m]+delta, 0, 1);
+        }
+        heads[m] += delta;
+    }
+
+    /**
+     * Changes the state
+     * @param newState the new state
+     */
+    void setState(int newState) {
+        if(hashed) {
+            addTerm(STATE_TERM, 0, state, 0, -1);
+            addTerm(STATE_TERM, 0, newState, 0, 1);
+        }
+        state = newState;
+    }
+
+    /**
+     * Computes the fingerprint of this configuration and keeps it updated from now on
+     */
+    void enableFingerprint() {
+        if(hashed)
+            return;
+        hashed = true;
+        hashHigh = hashLow = 0;
+        addTerm(STATE_TERM, 0, state, 0, 1);
+        for(int m=0; m<tapes.length; m++) {
+            Tape t = tapes[m];
+            addTerm(HEAD_TERM, m, heads[m], 0, 1);
+            addTerm(LENGTH_TERM, m, t.length(), 0, 1);
+            for(int p=0; p<t.length(); p++)
+                addTerm(CELL_TERM, m, p, t.read(p), 1);
+        }
+    }
+
+    /**
+     * Gets the 64 most significant bits of the fingerprint
+     * @return the 64 most significant bits of the fingerprint
+     */
+    long fingerprintHigh() {
+        return hashHigh;
+    }
+
+    /**
+     * Gets the 64 least significant bits of the fingerprint
+     * @return the 64 least significant bits of the fingerprint
+     */
+    long fingerprintLow() {
+        return hashLow;
+    }
+
+    private void addTerm(long kind, int tape, long position, long symbol, int sign) {
+        long key = mix(mix(mix(kind*0x9E3779B97F4A7C15L + tape) + position) + symbol);
+        hashHigh += sign * mix(key ^ HIGH_SEED);
+        hashLow += sign * mix(key ^ LOW_SEED);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,101 @@
+package complexity;
+
+import java.nio.file.Path;
+
+/**
+ * A Dedup describes how an optimized simulation remembers the configurations it has already executed, so that it does not re-execute them.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public final class Dedup {
+    private static final int EXACT = 0, FINGERPRINTS = 1, BOUNDED = 2, OFF_HEAP = 3;
+    private final int kind;
+    private final boolean verify;
+    private final int capacity;
+    private final Path directory;
+
+    private Dedup(int kind, boolean verify, int capacity, Path directory) {
+        this.kind = kind;
+        this.verify = verify;
+        this.capacity = capacity;
+        this.directory = directory;
+    }
+
+    /**
+     * Remembers a full copy of every configuration (state, tapes and heads)
+     * @return the exact dedup
+     */
+    public static Dedup exact() {
+        return new Dedup(EXACT, false, 0, null);
+    }
+
+    /**
+     * Remembers only a 128-bit fingerprint of every configuration, updated incrementally as the simulation advances.
+     * A configuration may be mistaken for an already executed one with negligible probability (about n<sup>2</sup>/2<sup>129</sup> over n configurations)
+     * @return the fingerprint dedup
+     */
+    public static Dedup fingerprints() {
+        return fingerprints(false);
+    }
+
+    /**
+     * Remembers a 128-bit fingerprint of every configuration, updated incrementally as the simulation advances
+     * @param verify true if the configurations which hit a fingerprint must be kept and compared, so that two of them are never mistaken for each other, false otherwise
+     * @return the fingerprint dedup
+     */
+    public static Dedup fingerprints(boolean verify) {
+        return new Dedup(FINGERPRINTS, verify, 0, null);
+    }
+
+    /**
+     * Remembers the fingerprints of at most <i>capacity</i> configurations: when the cache is full, the least recently hit fingerprints are evicted with the CLOCK policy.
+     * An evicted configuration is executed again if the simulation reaches it again, so the simulation may return the same output more than once
+     * @param capacity the maximum number of remembered configurations (rounded up to a power of two)
+     * @return the bounded dedup
+     */
+    public static Dedup bounded(int capacity) {
+        if(capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        return new Dedup(BOUNDED, false, capacity, null);
+    }
+
+    /**
+     * Remembers the fingerprints of every configuration outside the Java heap, in direct memory
+     * @return the off-heap dedup
+     */
+    public static Dedup offHeap() {
+        return new Dedup(OFF_HEAP, false, 0, null);
+    }
+
+    /**
+     * Remembers the fingerprints of every configuration in memory-mapped files, which are deleted when the simulation ends
+     * @param directory the directory where the files are created
+     * @return the memory-mapped dedup
+     */
+    public static Dedup mapped(Path directory) {
+        if(directory == null)
+            throw new NullPointerException("directory");
+        return new Dedup(OFF_HEAP, false, 0, directory);
+    }
+
+    /**
+     * Creates a new empty store of this kind
+     * @param concurrent true if the store will be shared by several threads, false otherwise
+     * @return the new store
+     */
+    VisitedStore newStore(boolean concurrent) {
+        switch(kind) {
+            case EXACT:
+                return new VisitedStore.Exact(concurrent);
+            case BOUNDED:
+                return new VisitedStore.Bounded(concurrent, capacity);
+            case OFF_HEAP:
+                return new VisitedStore.OffHeap(concurrent, directory);
+            default:
+                return new VisitedStore.Fingerprints(concurrent, verify);
+        }
+    }
+}
@@ -0,0 +1,630 @@
+package complexity;
+
+import complexity.Turing.FINAL_STATE;
+import complexity.Turing.Output;
+import complexity.Turing.TuringException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * An Executor explores the computation tree of a Turing machine iteratively.
+ * Deterministic stretches advance a single configuration in place, while the pending branches of non-deterministic steps are kept on an explicit work stack, so the native stack does not grow with the length of the computation.
+ * Branches are visited depth-first, in the same order in which they appear in the transition table, unless the options ask for another {@link Strategy}:
+ * breadth-first and best-first executors keep the pending branches in a queue and switch branch after every step, and an iterative deepening executor cuts the branches at a maximum depth and explores its roots again with a doubled maximum.
+ * <p>
+ * Every iteration applies at most one transition, so the executor can stop between any two steps: the branches it has not explored yet form its frontier.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class Executor {
+    /**
+     * Number of steps acquired from the budget at once, and number of steps between two checks of the deadline
+     */
+    private static final int CHUNK = 1 << 12;
+    /**
+     * The outputs which keep only the final state, shared by all the executors
+     */
+    private static final Output[] BARE_OUTPUTS = new Output[FINAL_STATE.values().length];
+    static {
+        for(FINAL_STATE f: FINAL_STATE.values())
+            BARE_OUTPUTS[f.ordinal()] = new Output(f, null, null);
+    }
+    private final TransitionTable table;
+    private final VisitedStore yetExecuted;
+    private final Spawner spawner;
+    private final Budget budget;
+    private final Monitor monitor;
+    private final Monitor.Recorder recorder;
+    /**
+     * True if the recorder counts the steps, so it must be told of every step
+     */
+    private final boolean countsSteps;
+    private final RunOptions.Detail detail;
+    private final Strategy strategy;
+    /**
+     * True if the self-loops are applied in a single jump
+     */
+    private final boolean accelerated;
+    /**
+     * The deterministic rules compiled to bytecode, or null if the steps are interpreted
+     */
+    private final Kernel kernel;
+    private final int maxTapeLength;
+    /**
+     * True if the deterministic stretches of the branches are checked for cycles
+     */
+    private final boolean detectCycles;
+    /**
+     * The first configuration of the current deterministic stretch, and the configuration saved by Brent's algorithm with its distance from the current one and the power of two which bounds it
+     */
+    private Configuration origin, saved;
+    private long distance, power;
+    private final Deque<Branch> stack;
+    private final PriorityQueue<Ranked> ranked;
+    /**
+     * The branches of a best-first executor whose pending transition has not been applied, since the simulation has been stopped, so they have not been scored yet
+     */
+    private final List<Branch> unranked;
+    private List<Branch> roots;
+    private long floor = -1, limit = Long.MAX_VALUE;
+    private boolean cut;
+    private long created;
+    private Configuration current;
+    private int pending = Branch.NONE;
+    private long quota;
+    private int ticks;
+    /**
+     * The checkpoints of the simulation, or null, and whether one is due
+     */
+    private Checkpoint checkpoint;
+    private boolean checkpointDue;
+
+    /**
+     * A Spawner may take charge of the pending branches of a non-deterministic step, e.g. to explore them on another thread
+     */
+    interface Spawner {
+        /**
+         * Offers a pending branch
+         * @param branch a branch with a private copy of its configuration
+         * @return true if the branch has been taken in charge, false if the executor must explore it
+         */
+        boolean spawn(Branch branch);
+    }
+
+    /**
+     * A pending branch of a best-first executor, with its score
+     */
+    private static final class Ranked implements Comparable<Ranked> {
+        final Branch branch;
+        final double score;
+
+        Ranked(Branch branch, double score) {
+            this.branch = branch;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Ranked o) {
+            int ret = Double.compare(score, o.score);
+            return ret != 0 ? ret : Long.compare(branch.rank, o.branch.rank);
+        }
+    }
+
+    /**
+     * Creates a new executor with no branch to explore
+     * @param table the compiled program of the Turing machine
+     * @param yetExecuted the store of the configurations already executed, or null if branches may be re-executed
+     * @param spawner the spawner which is offered the pending branches, or null if the executor explores all of them
+     * @param budget the budget of the simulation
+     * @param monitor the monitor of the simulation, or null if the simulation is not instrumented
+     * @param options the options of the simulation, which tell the strategy and how much of the final configuration is kept in every output
+     */
+    Executor(TransitionTable table, VisitedStore yetExecuted, Spawner spawner, Budget budget, Monitor monitor, RunOptions options) {
+        this(table, yetExecuted, spawner, budget, monitor, options, new ArrayDeque<>());
+    }
+
+    /**
+     * Creates a new executor with no branch to explore, which keeps its work stack in a reused deque
+     * @param table the compiled program of the Turing machine
+     * @param yetExecuted the store of the configurations already executed, or null if branches may be re-executed
+     * @param spawner the spawner which is offered the pending branches, or null if the executor explores all of them
+     * @param budget the budget of the simulation
+     * @param monitor the monitor of the simulation, or null if the simulation is not instrumented
+     * @param options the options of the simulation, which tell the strategy and how much of the final configuration is kept in every output
+     * @param stack the deque which is cleared and used as work stack, or as queue by a breadth-first executor
+     */
+    Executor(TransitionTable table, VisitedStore yetExecuted, Spawner spawner, Budget budget, Monitor monitor, RunOptions options, Deque<Branch> stack) {
+        this.table = table;
+        this.yetExecuted = yetExecuted;
+        this.spawner = spawner;
+        this.budget = budget;
+        this.monitor = monitor;
+        this.recorder = monitor == null ? null : monitor.recorder();
+        this.countsSteps = recorder != null && recorder.countsSteps;
+        this.detail = options.getOutputDetail();
+        this.strategy = options.getStrategy();
+        this.accelerated = options.isAccelerate() && yetExecuted == null && (strategy.kind == Strategy.DEPTH_FIRST || strategy.kind == Strategy.ITERATIVE_DEEPENING);
+        this.maxTapeLength = options.getMaxTapeLength();
+        this.detectCycles = options.isDetectCycles();
+        this.kernel = options.isCompile() && yetExecuted == null && !countsSteps && !detectCycles && (strategy.kind == Strategy.DEPTH_FIRST || strategy.kind == Strategy.ITERATIVE_DEEPENING) ? table.kernel() : null;
+        this.stack = stack;
+        this.ranked = strategy.kind == Strategy.BEST_FIRST ? new PriorityQueue<>() : null;
+        this.unranked = strategy.kind == Strategy.BEST_FIRST ? new ArrayList<>() : null;
+        if(strategy.kind == Strategy.ITERATIVE_DEEPENING)
+            limit = strategy.initialDepth;
+        stack.clear();
+    }
+
+    /**
+     * Adds some branches to explore: a depth-first executor explores them in the given order, before the ones already added.
+     * An iterative deepening executor takes them as the roots which are explored again at every iteration, and a best-first executor goes on exploring the branch it was exploring when its frontier was taken, if it is the first one, and ranks the others as it did
+     * @param branches the branches to explore
+     */
+    void push(List<Branch> branches) {
+        for(Branch b: branches)
+            if(yetExecuted != null && yetExecuted.usesFingerprints())
+                b.configuration.enableFingerprint();
+        if(strategy.kind == Strategy.ITERATIVE_DEEPENING) {
+            if(roots == null)
+                roots = new ArrayList<>();
+            roots.addAll(branches);
+            for(int i=branches.size()-1; i>=0; i--)
+                stack.push(fork(branches.get(i)));
+        } else if(strategy.kind == Strategy.DEPTH_FIRST) {
+            for(int i=branches.size()-1; i>=0; i--)
+                stack.push(branches.get(i));
+        } else {
+            for(Branch b: branches) {
+                if(b.rank == Branch.CURRENT && current == null && isEmpty()) {
+                    current = b.configuration;
+                    pending = b.action;
+                } else
+                    enqueue(b);
+            }
+        }
+    }
+
+    private Branch fork(Branch b) {
+        return new Branch(table, b.configuration.copy(), b.action);
+    }
+
+    /**
+     * Advances the simulation until the next final state is reached
+     * @return the output of the next final state, or null if the computation tree has been completely explored or the simulation has been stopped
+     * @throws TuringException
+     */
+    Output next() throws TuringException {
+        final int tapesNumber = table.tapesNumber;
+        while(true) {
+            if(budget.isStopped())
+                return null;
+            if(checkpointDue) {
+                checkpointDue = false;
+                checkpoint.write(branches(), budget.steps() - quota, budget, yetExecuted);
+            }
+            if(current == null) {
+                Branch b;
+                if((b=poll()) == null) {
+                    if(deepen())
+                        continue;
+                    return null;
+                }
+                current = b.configuration;
+                pending = b.action;
+                origin = null;
+            }
+            Configuration c = current;
+            if(pending != Branch.NONE) {
+                if(!(accelerated && table.loop[pending] ? accelerate(c, pending) : step(c, pending)))
+                    return null;
+                pending = Branch.NONE;
+                continue;
+            }
+            if(budget.exceedsTape(c))
+                return null;
+            if(yetExecuted != null && !yetExecuted.visit(c)) {
+                current = null;
+                budget.end();
+                if(recorder != null)
+                    recorder.end(c, false);
+                if(detectCycles && origin != null)
+                    revisits(c);
+                continue;
+            }
+            FINAL_STATE retState = table.finals[c.state];
+            if(retState != null) {
+                current = null;
+                budget.end();
+                if(recorder != null)
+                    recorder.end(c, true);
+                if(c.depth <= floor)
+                    continue;
+                budget.halt();
+                return output(retState, c);
+            }
+            if(c.depth >= limit) {
+                current = null;
+                budget.end();
+                if(recorder != null)
+                    recorder.end(c, false);
+                cut = true;
+                continue;
+            }
+            if(kernel != null) {
+                int n = run(c);
+                if(n < 0)
+                    return null;
+                if(n > 0)
+                    continue;
+            }
+            long key = 0;
+            for(int i=0; i<tapesNumber; i++)
+                key = table.pack(key, c.read(i));
+            int entry;
+            if((entry=table.find(c.state, key)) == TransitionTable.UNDEFINED)
+                throw undefined(c);
+            int first = table.entryStart[entry], last = table.entryStart[entry+1]-1;
+            if(detectCycles) {
+                if(last > first)
+                    origin = null;
+                else if(cycles(c)) {
+                    current = null;
+                    budget.end();
+                    if(recorder != null)
+                        recorder.end(c, false);
+                    continue;
+                }
+            }
+            if(last > first)
+                budget.fork(last-first);
+            if(strategy.kind == Strategy.DEPTH_FIRST || strategy.kind == Strategy.ITERATIVE_DEEPENING) {
+                for(int a=last; a>first; a--) {
+                    Branch b = new Branch(table, c.copy(), a);
+                    if(spawner == null || !spawner.spawn(b))
+                        stack.push(b);
+                }
+                pending = first;
+            } else if(last == first && isEmpty())
+                pending = first;
+            else {
+                current = null;
+                Branch[] siblings = new Branch[last-first+1];
+                for(int a=last; a>first; a--)
+                    siblings[a-first] = new Branch(table, c.copy(), a);
+                siblings[0] = new Branch(table, c, first);
+                for(Branch b: siblings)
+                    enqueue(b);
+            }
+            if(recorder != null && last > first)
+                recorder.fork(last-first, ranked == null ? stack.size() : ranked.size());
+        }
+    }
+
+    /**
+     * Applies a transition, if the budget allows it
+     * @return true if the transition has been applied, false if the simulation has been stopped
+     */
+    private boolean step(Configuration c, int action) throws TuringException {
+        if((++ticks & (CHUNK-1)) == 0 && chunkEnded(c))
+            return false;
+        if(quota == 0 && (quota=budget.acquire(CHUNK)) == 0)
+            return false;
+        quota--;
+        if(countsSteps)
+            recorder.step(c.state, action);
+        apply(c, action);
+        return true;
+    }
+
+    /**
+     * Applies a self-loop as many times in a row as single steps would, if the budget allows it.
+     * The loop doesn't change the symbols it reads, so the moving heads jump over the runs of those symbols, up to the limits of the budget, of the depth and of the tapes, and only the tapes which grow are extended
+     * @return true if the transition has been applied at least once, false if the simulation has been stopped
+     */
+    private boolean accelerate(Configuration c, int action) throws TuringException {
+        final int tapesNumber = table.tapesNumber;
+        if(quota == 0 && (quota=budget.acquire(CHUNK)) == 0)
+            return false;
+        int n = (int) Long.min(quota, limit - c.depth);
+        for(int m=0, j=action*tapesNumber; m<tapesNumber && n > 1; m++, j++) {
+            int head = c.heads[m];
+            if(table.move[j] == TransitionTable.MOVE_RIGHT)
+                n = c.tapes[m].run(head, 1, table.write[j], (int) Long.min(n, (long) maxTapeLength - head));
+            else if(table.move[j] == TransitionTable.MOVE_LEFT)
+                n = c.tapes[m].run(head, -1, table.write[j], Integer.min(n, head));
+        }
+        if(n <= 1)
+            return step(c, action);
+        int before = ticks;
+        ticks += n;
+        if(((before ^ ticks) & -CHUNK) != 0 && chunkEnded(c))
+            return false;
+        quota -= n;
+        if(countsSteps)
+            recorder.step(c.state, action, n);
+        for(int m=0, j=action*tapesNumber; m<tapesNumber; m++, j++) {
+            if(table.move[j] == TransitionTable.MOVE_RIGHT) {
+                c.move(m, n-1);
+                c.read(m);
+                c.move(m, 1);
+            } else if(table.move[j] == TransitionTable.MOVE_LEFT)
+                c.move(m, -n);
+        }
+        c.depth += n;
+        return true;
+    }
+
+    /**
+     * Runs the compiled rules from a configuration, up to the steps already acquired and the limits of the depth and of the tapes: the interpreter takes the step which reaches one of them, so it stops the simulation exactly as it would have
+     * @return the number of transitions applied, or -1 if the simulation has been stopped
+     */
+    private int run(Configuration c) {
+        if(quota == 0)
+            return 0;
+        int maxHead = 0;
+        for(int head: c.heads)
+            maxHead = Integer.max(maxHead, head);
+        int max = (int) Long.min(Long.min(quota, limit - c.depth), (long) maxTapeLength - 1 - maxHead);
+        if(max <= 0)
+            return 0;
+        long ret = kernel.run(c.tapes, c.heads, c.state, max, !accelerated);
+        int n = (int) (ret >>> 32);
+        if(n == 0)
+            return 0;
+        int before = ticks;
+        ticks += n;
+        quota -= n;
+        c.depth += n;
+        c.setState((int) ret);
+        if(((before ^ ticks) & -CHUNK) != 0 && chunkEnded(c))
+            return -1;
+        return n;
+    }
+
+    /**
+     * Advances Brent's algorithm on the current deterministic stretch, which is about to take a step from <i>c</i>.
+     * The configuration saved at every power of two steps is compared with the following ones, until it is saved again
+     * @return true if <i>c</i> is the saved configuration, so the branch loops forever and must be dropped
+     */
+    private boolean cycles(Configuration c) throws TuringException {
+        if(origin == null) {
+            origin = saved = c.copy();
+            distance = 0;
+            power = 1;
+            return false;
+        }
+        distance++;
+        if(c.sameAs(saved)) {
+            loop(saved);
+            return true;
+        }
+        if(distance == power) {
+            saved = c.copy();
+            distance = 0;
+            power <<= 1;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a configuration which had already been executed comes from the current deterministic stretch, replaying the stretch up to it
+     * @param c the configuration which had already been executed
+     * @return true if the stretch had reached <i>c</i> before, so the branch loops forever and has been dropped
+     */
+    private boolean revisits(Configuration c) throws TuringException {
+        Configuration r = origin.copy();
+        while(r.depth < c.depth) {
+            if(r.sameAs(c)) {
+                loop(r);
+                return true;
+            }
+            advance(r);
+        }
+        return false;
+    }
+
+    /**
+     * Records that the current deterministic stretch loops forever, measuring the cycle by replaying the stretch: a configuration of the cycle is advanced until it comes back to find the length, then two copies of the first configuration of the stretch, one ahead of the other by the length, are advanced until they meet to find the entry
+     * @param looping a configuration of the cycle
+     */
+    private void loop(Configuration looping) throws TuringException {
+        Configuration ahead = looping.copy();
+        long length = 0;
+        do {
+            advance(ahead);
+            length++;
+        } while(!ahead.sameAs(looping));
+        Configuration behind = origin.copy();
+        ahead = origin.copy();
+        for(long i=0; i<length; i++)
+            advance(ahead);
+        while(!behind.sameAs(ahead)) {
+            advance(behind);
+            advance(ahead);
+        }
+        budget.loop(behind.depth, length);
+    }
+
+    /**
+     * Applies again the only transition of a configuration of a deterministic stretch, outside of the budget
+     */
+    private void advance(Configuration c) throws TuringException {
+        final int tapesNumber = table.tapesNumber;
+        long key = 0;
+        for(int i=0; i<tapesNumber; i++)
+            key = table.pack(key, c.read(i));
+        apply(c, table.entryStart[table.find(c.state, key)]);
+    }
+
+    /**
+     * Records the configuration being advanced and ticks the monitor, checks the deadline and whether a checkpoint is due, every CHUNK steps
+     * @param c the configuration being advanced
+     * @return true if the deadline has passed, false otherwise
+     */
+    private boolean chunkEnded(Configuration c) {
+        if(monitor != null) {
+            recorder.reach(c);
+            monitor.tick();
+        }
+        if(checkpoint != null && checkpoint.isDue())
+            checkpointDue = true;
+        return budget.expired();
+    }
+
+    /**
+     * Adds a branch to the queue of a breadth-first or best-first executor.
+     * A best-first executor applies the pending transition of the branch before scoring it, and keeps the branch unranked if the simulation has been stopped first; a branch which has already been ranked keeps its rank
+     */
+    private void enqueue(Branch b) throws TuringException {
+        if(ranked == null) {
+            stack.addLast(b);
+            return;
+        }
+        long rank = b.rank;
+        if(rank < 0)
+            rank = created++;
+        else
+            created = Long.max(created, rank+1);
+        if(b.action != Branch.NONE && !step(b.configuration, b.action)) {
+            unranked.add(new Branch(table, b.configuration, b.action, rank));
+            return;
+        }
+        if(b.action != Branch.NONE || b.rank != rank)
+            b = new Branch(table, b.configuration, Branch.NONE, rank);
+        ranked.add(new Ranked(b, strategy.heuristic.applyAsDouble(b)));
+    }
+
+    private Branch poll() {
+        if(ranked == null)
+            return stack.poll();
+        Ranked r = ranked.poll();
+        return r == null ? null : r.branch;
+    }
+
+    private boolean isEmpty() {
+        return ranked == null ? stack.isEmpty() : ranked.isEmpty();
+    }
+
+    /**
+     * Starts the next iteration of an iterative deepening executor, if some branch has been cut by the current one
+     * @return true if a new iteration has been started, false if the computation tree has been completely explored
+     */
+    private boolean deepen() {
+        if(roots == null || !cut)
+            return false;
+        cut = false;
+        floor = limit;
+        limit = limit > Long.MAX_VALUE/2 ? Long.MAX_VALUE : limit*2;
+        budget.fork(roots.size());
+        for(int i=roots.size()-1; i>=0; i--)
+            stack.push(fork(roots.get(i)));
+        return true;
+    }
+
+    /**
+     * Gives back to the budget the steps acquired and not used, and records the configuration of the branch which was being explored, if any
+     */
+    void close() {
+        budget.release(quota);
+        quota = 0;
+        if(recorder != null && current != null)
+            recorder.reach(current);
+    }
+
+    /**
+     * Writes checkpoints of the simulation between two steps, whenever they are due
+     * @param checkpoint the checkpoints of the simulation
+     */
+    void checkpointTo(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Removes and returns the branches which have not been explored yet, in the order in which they would have been explored.
+     * An iterative deepening executor has no frontier, since its branches would be explored again by the next iterations
+     * @return the frontier of the executor
+     */
+    List<Branch> frontier() {
+        List<Branch> ret = branches();
+        current = null;
+        pending = Branch.NONE;
+        stack.clear();
+        if(ranked != null) {
+            ranked.clear();
+            unranked.clear();
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the branches which have not been explored yet, in the order in which they would have been explored, without removing them.
+     * The branches of a best-first executor which have not been scored yet come last, and all of them keep their rank
+     * @return the frontier of the executor
+     */
+    private List<Branch> branches() {
+        List<Branch> ret = new ArrayList<>(stack.size()+1);
+        if(current != null && roots == null)
+            ret.add(new Branch(table, current, pending, ranked != null ? Branch.CURRENT : Branch.UNRANKED));
+        if(ranked != null) {
+            Ranked[] pendingRanked = ranked.toArray(new Ranked[ranked.size()]);
+            Arrays.sort(pendingRanked);
+            for(Ranked r: pendingRanked)
+                ret.add(r.branch);
+            ret.addAll(unranked);
+        } else if(roots == null)
+            ret.addAll(stack);
+        return ret;
+    }
+
+    private Output output(FINAL_STATE state, Configuration c) {
+        switch(detail) {
+            case FULL:
+                return new Output(state, c.snapshot(), c.heads.clone());
+            case HEADS:
+                return new Output(state, null, c.heads.clone());
+            default:
+                return BARE_OUTPUTS[state.ordinal()];
+        }
+    }
+
+    private void apply(Configuration c, int action) throws TuringException {
+        final int tapesNumber = table.tapesNumber;
+        for(int m=0, j=action*tapesNumber; m<tapesNumber; m++, j++) {
+            byte dir = table.move[j];
+            c.write(m, table.write[j]);
+            if(dir == TransitionTable.MOVE_RIGHT)
+                c.move(m, 1);
+            else if(dir == TransitionTable.MOVE_LEFT) {
+                if(c.heads[m] == 0)
+                    throw new TuringException("Cannot go before the universe!");
+                c.move(m, -1);
+            } else if(dir != TransitionTable.MOVE_STAY)
+                throw new TuringException("Cannot understand the following direction: " + table.direction[j]);
+        }
+        c.setState(table.target[action]);
+        c.depth++;
+    }
+
+    /**
+     * Explains why no transition can be applied to a configuration; the checks are done only once the lookup has failed, so that they cost nothing on the steps which succeed
+     */
+    private TuringException undefined(Configuration c) {
+        if(!table.defined[c.state])
+            return new TuringException("Cannot find state " + table.states[c.state]);
+        return new TuringException("It is not defined what to do from state " + table.states[c.state] + " with configuration " + encodeCurrentConfiguration(c));
+    }
+
+    private static String encodeCurrentConfiguration(Configuration c) {
+        String ret = "(";
+        for(int i=0; i<c.tapes.length; i++)
+            ret += c.read(i) + ", ";
+        return ret.substring(0, ret.length()-2) + ")";
+    }
+}
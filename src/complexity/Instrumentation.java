@@ -0,0 +1,110 @@
+package complexity;
+
+import java.util.concurrent.TimeUnit;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * An Instrumentation describes which metrics a simulation records while it runs and where it publishes them.
+ * Every instrumented simulation records the steps executed, the branches forked, the dedup hits and misses, the maximum depth of a branch, the maximum number of pending branches of an executor and the maximum length of a tape;
+ * these counters are updated when a branch forks or ends, and every few thousand steps and when the simulation stops from the configuration being advanced, so they cost nothing on the path of a deterministic step but follow a long deterministic stretch while it runs.
+ * Visits of every state and firings of every transition are counted on every step, or on one step out of a fixed period and then scaled up, or not at all.
+ * <p>
+ * The metrics can be read from the RunResult when the simulation ends, given to a {@link SimulationListener} at fixed intervals while it runs, and published through JMX.
+ * A simulation which is not instrumented records nothing and allocates nothing for its metrics.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public final class Instrumentation {
+    static final int COUNTERS = 0, SAMPLED = 1, EXACT = 2;
+    final int kind;
+    final int period;
+    final SimulationListener listener;
+    final long interval;
+    final ObjectName name;
+
+    private Instrumentation(int kind, int period, SimulationListener listener, long interval, ObjectName name) {
+        this.kind = kind;
+        this.period = period;
+        this.listener = listener;
+        this.interval = interval;
+        this.name = name;
+    }
+
+    /**
+     * Records only the counters which are updated when a branch forks or ends, or every few thousand steps: visits of states and firings of transitions are not counted
+     * @return the cheapest instrumentation
+     */
+    public static Instrumentation counters() {
+        return new Instrumentation(COUNTERS, 0, null, 0, null);
+    }
+
+    /**
+     * Records the counters, and counts visits of states and firings of transitions on one step out of every <i>period</i>.
+     * The counts are multiplied by the period, so they are estimates whose relative error shrinks as the simulation grows
+     * @param period the number of steps between two counted steps
+     * @return the sampled instrumentation
+     */
+    public static Instrumentation sampled(int period) {
+        if(period < 1)
+            throw new IllegalArgumentException("period must be positive");
+        return new Instrumentation(period == 1 ? EXACT : SAMPLED, period, null, 0, null);
+    }
+
+    /**
+     * Records the counters, and counts the visits of every state and the firings of every transition on every step
+     * @return the exact instrumentation
+     */
+    public static Instrumentation exact() {
+        return new Instrumentation(EXACT, 1, null, 0, null);
+    }
+
+    /**
+     * Returns a copy of this instrumentation which gives the metrics to a listener while the simulation runs, and once more when it ends.
+     * The metrics are taken by the executors between two steps, so the interval is respected within a few thousand steps
+     * @param listener the listener of the simulation
+     * @param interval the minimum time between two samples
+     * @param unit the unit of <i>interval</i>
+     * @return the new instrumentation
+     */
+    public Instrumentation listener(SimulationListener listener, long interval, TimeUnit unit) {
+        if(listener == null)
+            throw new NullPointerException("listener");
+        if(interval < 0)
+            throw new IllegalArgumentException("interval must not be negative");
+        return new Instrumentation(kind, period, listener, unit.toNanos(interval), name);
+    }
+
+    /**
+     * Returns a copy of this instrumentation which publishes the metrics of its simulations through a {@link SimulationMXBean} on the platform MBean server.
+     * The MBean is registered by the first simulation, as <code>complexity:type=Simulation,name=<i>name</i></code>, and it shows the metrics of the last simulation started with this name
+     * @param name the name of the MBean
+     * @return the new instrumentation
+     */
+    public Instrumentation register(String name) {
+        try {
+            return new Instrumentation(kind, period, listener, interval, new ObjectName("complexity:type=Simulation,name=" + ObjectName.quote(name)));
+        } catch(MalformedObjectNameException e) {
+            throw new IllegalArgumentException("Illegal MBean name: " + name, e);
+        }
+    }
+
+    /**
+     * Checks if the visits of states and the firings of transitions are counted
+     * @return true if they are counted, exactly or on a sample of the steps, false otherwise
+     */
+    public boolean countsSteps() {
+        return kind != COUNTERS;
+    }
+
+    /**
+     * Gets the number of steps between two counted steps
+     * @return 1 if every step is counted, the sampling period if the steps are sampled, 0 if no step is counted
+     */
+    public int getPeriod() {
+        return period;
+    }
+}
@@ -0,0 +1,470 @@
+package complexity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Jit compiles the deterministic rules of a transition table into a class which implements {@link Kernel}, so that HotSpot compiles the machine itself instead of the interpreter loop.
+ * The class is written by hand in the class file format 49, which needs no stack map frames, and it is defined by its own class loader.
+ * <p>
+ * The generated method is a loop around a <code>lookupswitch</code> on the state: every state is a block which reads the symbols under the heads and selects its rule with nested <code>lookupswitch</code>es on the symbols, packed two tapes at a time.
+ * Every rule writes only the symbols which change, moves the heads, sets the new state and jumps back to the loop; every case which is not compiled (non-deterministic configurations, invalid directions, final and undefined states) leaves the loop, so the interpreter takes over.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class Jit {
+    private static final String NAME = "complexity/CompiledKernel", TAPE = "complexity/datastructure/Tape";
+    /**
+     * The largest generated method: the branches use 16-bit offsets
+     */
+    private static final int MAX_CODE = Short.MAX_VALUE;
+    private static final int MAX_TAPES = 100;
+    private static final int TAPES = 1, HEADS = 2, STATE = 3, MAX = 4, LOOPS = 5, STEPS = 6, FIRST_TAPE = 7;
+    private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13, ILOAD = 0x15, ALOAD = 0x19, IALOAD = 0x2e, AALOAD = 0x32,
+            ISTORE = 0x36, ASTORE = 0x3a, IASTORE = 0x4f, DUP2 = 0x5c, IADD = 0x60, ISHL = 0x78, LSHL = 0x79, IOR = 0x80, LOR = 0x81, IINC = 0x84, I2L = 0x85,
+            IFEQ = 0x99, IFNE = 0x9a, IF_ICMPGE = 0xa2, GOTO = 0xa7, LOOKUPSWITCH = 0xab, LRETURN = 0xad, RETURN = 0xb1, INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7;
+
+    private final TransitionTable table;
+    private final int tapesNumber;
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int constantsNumber = 1;
+    private byte[] code = new byte[1024];
+    private int pos;
+    private int[] labels = new int[64];
+    private int labelsNumber;
+    /**
+     * Every branch to patch: the position of its opcode, the position of its offset, its label and the size of the offset
+     */
+    private final List<int[]> fixups = new ArrayList<>();
+
+    private Jit(TransitionTable table) {
+        this.table = table;
+        this.tapesNumber = table.tapesNumber;
+    }
+
+    /**
+     * Compiles the deterministic rules of a transition table
+     * @param table the transition table
+     * @return the compiled rules, or null if the table has no deterministic rule, it is too large to be compiled or the generated class cannot be loaded
+     * @throws IllegalStateException if the generated class is rejected by the verifier
+     */
+    static Kernel compile(TransitionTable table) {
+        if(table.tapesNumber > MAX_TAPES)
+            return null;
+        try {
+            byte[] bytes = new Jit(table).assemble();
+            if(bytes == null)
+                return null;
+            Class<?> c = new Loader(Kernel.class.getClassLoader()).define(NAME.replace('/', '.'), bytes);
+            return (Kernel) c.getConstructor().newInstance();
+        } catch(VerifyError | ClassFormatError e) {
+            throw new IllegalStateException("The compiled rules are not a valid class", e);
+        } catch(IOException | ReflectiveOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Defines the class of one compiled table
+     */
+    private static final class Loader extends ClassLoader {
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private byte[] assemble() throws IOException {
+        int self = classConstant(NAME), object = classConstant("java/lang/Object"), kernel = classConstant("complexity/Kernel");
+        int init = methodConstant("java/lang/Object", "<init>", "()V");
+        int codeName = utf8("Code"), initName = utf8("<init>"), initType = utf8("()V");
+        int runName = utf8("run"), runType = utf8("([L" + TAPE + ";[IIIZ)J");
+        if(!run())
+            return null;
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(ret);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);
+        out.writeShort(constantsNumber);
+        pool.flush();
+        poolBytes.writeTo(out);
+        out.writeShort(0x0031);
+        out.writeShort(self);
+        out.writeShort(object);
+        out.writeShort(1);
+        out.writeShort(kernel);
+        out.writeShort(0);
+        out.writeShort(2);
+        out.writeShort(0x0001);
+        out.writeShort(initName);
+        out.writeShort(initType);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(2 + 2 + 4 + 5 + 2 + 2);
+        out.writeShort(1);
+        out.writeShort(1);
+        out.writeInt(5);
+        out.writeByte(ALOAD+0x11);
+        out.writeByte(INVOKESPECIAL);
+        out.writeShort(init);
+        out.writeByte(RETURN);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0x0001);
+        out.writeShort(runName);
+        out.writeShort(runType);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(2 + 2 + 4 + pos + 2 + 2);
+        out.writeShort(6);
+        out.writeShort(FIRST_TAPE + 2*tapesNumber);
+        out.writeInt(pos);
+        out.write(code, 0, pos);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.flush();
+        return ret.toByteArray();
+    }
+
+    /**
+     * Generates the code of the run method
+     * @return true if the method has been generated, false if there is nothing to compile or the method is too large
+     */
+    private boolean run() throws IOException {
+        int read = methodConstant(TAPE, "read", "(I)C"), write = methodConstant(TAPE, "write", "(IC)V");
+        List<Integer> states = new ArrayList<>();
+        Map<Integer, List<Integer>> entries = new HashMap<>();
+        for(int e=0; e<table.entryState.length; e++) {
+            if(compilable(e)) {
+                List<Integer> list = entries.get(table.entryState[e]);
+                if(list == null) {
+                    entries.put(table.entryState[e], list = new ArrayList<>());
+                    states.add(table.entryState[e]);
+                }
+                list.add(e);
+            }
+        }
+        if(states.isEmpty())
+            return false;
+        int loop = label(), exit = label();
+        int[] stateLabels = new int[states.size()];
+        push(0);
+        store(ISTORE, STEPS);
+        for(int m=0; m<tapesNumber; m++) {
+            load(ALOAD, TAPES);
+            push(m);
+            op(AALOAD);
+            store(ASTORE, FIRST_TAPE+m);
+        }
+        bind(loop);
+        load(ILOAD, STEPS);
+        load(ILOAD, MAX);
+        branch(IF_ICMPGE, exit);
+        load(ILOAD, STATE);
+        int[] keys = new int[states.size()];
+        for(int i=0; i<keys.length; i++) {
+            keys[i] = states.get(i);
+            stateLabels[i] = label();
+        }
+        lookupswitch(keys, stateLabels, exit);
+        for(int i=0; i<keys.length; i++) {
+            bind(stateLabels[i]);
+            for(int m=0; m<tapesNumber; m++) {
+                load(ALOAD, FIRST_TAPE+m);
+                load(ALOAD, HEADS);
+                push(m);
+                op(IALOAD);
+                invoke(INVOKEVIRTUAL, read);
+                store(ISTORE, FIRST_TAPE+tapesNumber+m);
+            }
+            select(entries.get(keys[i]), 0, loop, exit, write);
+            if(pos > MAX_CODE)
+                return false;
+        }
+        bind(exit);
+        load(ILOAD, STEPS);
+        op(I2L);
+        push(32);
+        op(LSHL);
+        load(ILOAD, STATE);
+        op(I2L);
+        op(LOR);
+        op(LRETURN);
+        if(pos > MAX_CODE)
+            return false;
+        for(int[] f: fixups) {
+            int offset = labels[f[2]] - f[0];
+            if(f[3] == 2) {
+                code[f[1]] = (byte) (offset >> 8);
+                code[f[1]+1] = (byte) offset;
+            } else {
+                for(int b=0; b<4; b++)
+                    code[f[1]+b] = (byte) (offset >> (24-8*b));
+            }
+        }
+        return true;
+    }
+
+    private boolean compilable(int e) {
+        int a = table.entryStart[e];
+        if(table.entryStart[e+1]-a != 1 || table.finals[table.entryState[e]] != null)
+            return false;
+        for(int m=0; m<tapesNumber; m++)
+            if(table.move[a*tapesNumber+m] == TransitionTable.MOVE_INVALID)
+                return false;
+        return true;
+    }
+
+    private char symbol(int e, int m) {
+        long key = table.entryKey[e];
+        for(int i=tapesNumber-1; i>m; i--)
+            key /= table.symbols.length;
+        return table.symbols[(int) (key % table.symbols.length)];
+    }
+
+    /**
+     * The symbols of the tapes 2*level and 2*level+1 read by an entry, packed in an int
+     */
+    private int packed(int e, int level) {
+        int m = 2*level;
+        return m+1 < tapesNumber ? symbol(e, m) << 16 | symbol(e, m+1) : symbol(e, m);
+    }
+
+    /**
+     * Generates the selection of the rule of some entries of a state by the symbols of the tapes from 2*level on, followed by the rules
+     */
+    private void select(List<Integer> entries, int level, int loop, int exit, int write) {
+        int m = 2*level;
+        load(ILOAD, FIRST_TAPE+tapesNumber+m);
+        if(m+1 < tapesNumber) {
+            push(16);
+            op(ISHL);
+            load(ILOAD, FIRST_TAPE+tapesNumber+m+1);
+            op(IOR);
+        }
+        Map<Integer, List<Integer>> groups = new HashMap<>();
+        for(int e: entries)
+            groups.computeIfAbsent(packed(e, level), (k) -> new ArrayList<>()).add(e);
+        int[] keys = new int[groups.size()];
+        int i = 0;
+        for(int k: groups.keySet())
+            keys[i++] = k;
+        int[] targets = new int[keys.length];
+        for(i=0; i<keys.length; i++)
+            targets[i] = label();
+        lookupswitch(keys, targets, exit);
+        for(i=0; i<keys.length; i++) {
+            bind(targets[i]);
+            if(m+2 < tapesNumber)
+                select(groups.get(keys[i]), level+1, loop, exit, write);
+            else
+                rule(groups.get(keys[i]).get(0), loop, exit, write);
+        }
+    }
+
+    /**
+     * Generates the only rule of an entry
+     */
+    private void rule(int e, int loop, int exit, int write) {
+        int a = table.entryStart[e];
+        if(table.loop[a]) {
+            load(ILOAD, LOOPS);
+            branch(IFEQ, exit);
+        }
+        for(int m=0; m<tapesNumber; m++) {
+            if(table.move[a*tapesNumber+m] == TransitionTable.MOVE_LEFT) {
+                load(ALOAD, HEADS);
+                push(m);
+                op(IALOAD);
+                branch(IFEQ, exit);
+            }
+        }
+        for(int m=0; m<tapesNumber; m++) {
+            char w = table.write[a*tapesNumber+m];
+            if(w != symbol(e, m)) {
+                load(ALOAD, FIRST_TAPE+m);
+                load(ALOAD, HEADS);
+                push(m);
+                op(IALOAD);
+                push(w);
+                invoke(INVOKEVIRTUAL, write);
+            }
+        }
+        for(int m=0; m<tapesNumber; m++) {
+            byte move = table.move[a*tapesNumber+m];
+            if(move != TransitionTable.MOVE_STAY) {
+                load(ALOAD, HEADS);
+                push(m);
+                op(DUP2);
+                op(IALOAD);
+                push(move);
+                op(IADD);
+                op(IASTORE);
+            }
+        }
+        push(table.target[a]);
+        store(ISTORE, STATE);
+        op(IINC);
+        op(STEPS);
+        op(1);
+        branch(GOTO, loop);
+    }
+
+    private int label() {
+        if(labelsNumber == labels.length)
+            labels = Arrays.copyOf(labels, labelsNumber*2);
+        labels[labelsNumber] = -1;
+        return labelsNumber++;
+    }
+
+    private void bind(int label) {
+        labels[label] = pos;
+    }
+
+    private void op(int b) {
+        if(pos == code.length)
+            code = Arrays.copyOf(code, code.length*2);
+        code[pos++] = (byte) b;
+    }
+
+    private void u2(int v) {
+        op(v >> 8);
+        op(v);
+    }
+
+    private void u4(int v) {
+        u2(v >>> 16);
+        u2(v);
+    }
+
+    private void branch(int opcode, int label) {
+        fixups.add(new int[]{pos, pos+1, label, 2});
+        op(opcode);
+        u2(0);
+    }
+
+    /**
+     * Generates a <code>lookupswitch</code>, sorting its keys as the verifier requires
+     */
+    private void lookupswitch(int[] keys, int[] targets, int defaultLabel) {
+        long[] pairs = new long[keys.length];
+        for(int i=0; i<keys.length; i++)
+            pairs[i] = (long) keys[i] << 32 | targets[i];
+        Arrays.sort(pairs);
+        int at = pos;
+        op(LOOKUPSWITCH);
+        while(pos % 4 != 0)
+            op(0);
+        fixups.add(new int[]{at, pos, defaultLabel, 4});
+        u4(0);
+        u4(keys.length);
+        for(long pair: pairs) {
+            u4((int) (pair >> 32));
+            fixups.add(new int[]{at, pos, (int) pair, 4});
+            u4(0);
+        }
+    }
+
+    private void load(int opcode, int local) {
+        if(local <= 3)
+            op(opcode + (opcode == ALOAD ? 0x11 : 0x05) + local);
+        else {
+            op(opcode);
+            op(local);
+        }
+    }
+
+    private void store(int opcode, int local) {
+        if(local <= 3)
+            op(opcode + (opcode == ASTORE ? 0x11 : 0x05) + local);
+        else {
+            op(opcode);
+            op(local);
+        }
+    }
+
+    private void push(int v) {
+        if(v >= -1 && v <= 5)
+            op(ICONST_0 + v);
+        else if(v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) {
+            op(BIPUSH);
+            op(v);
+        } else if(v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+            op(SIPUSH);
+            u2(v);
+        } else {
+            int index = constant("I" + v, 3, v);
+            if(index < 256) {
+                op(LDC);
+                op(index);
+            } else {
+                op(LDC_W);
+                u2(index);
+            }
+        }
+    }
+
+    private void invoke(int opcode, int method) {
+        op(opcode);
+        u2(method);
+    }
+
+    private int utf8(String s) {
+        Integer ret = constants.get("U" + s);
+        if(ret == null) {
+            try {
+                pool.writeByte(1);
+                pool.writeUTF(s);
+            } catch(IOException e) {
+                throw new IllegalStateException(e);
+            }
+            constants.put("U" + s, ret = constantsNumber++);
+        }
+        return ret;
+    }
+
+    private int classConstant(String name) {
+        return constant("C" + name, 7, utf8(name));
+    }
+
+    private int methodConstant(String owner, String name, String type) {
+        int c = classConstant(owner), nameAndType = constant("N" + name + type, 12, utf8(name) << 16 | utf8(type));
+        return constant("M" + owner + "." + name + type, 10, c << 16 | nameAndType);
+    }
+
+    /**
+     * Adds a constant made of a tag and a 32-bit value (an integer, or two indices)
+     */
+    private int constant(String key, int tag, int value) {
+        Integer ret = constants.get(key);
+        if(ret == null) {
+            try {
+                pool.writeByte(tag);
+                if(tag == 7)
+                    pool.writeShort(value);
+                else
+                    pool.writeInt(value);
+            } catch(IOException e) {
+                throw new IllegalStateException(e);
+            }
+            constants.put(key, ret = constantsNumber++);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,27 @@
+package complexity;
+
+import complexity.datastructure.Tape;
+
+/**
+ * A Kernel runs the deterministic steps of a Turing machine whose program has been compiled to bytecode.
+ * It is public only because the classes which implement it are generated at run time and defined by their own class loader, so they cannot see the package-private types; applications have no use for it.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public interface Kernel {
+
+    /**
+     * Applies deterministic transitions, as long as the state and the symbols under the heads select a rule which has been compiled.
+     * It returns before a non-deterministic or undefined configuration, a final or unknown state, a move before the first cell, and, if asked to, a self-loop
+     * @param tapes the tapes, which are read and written in place
+     * @param heads the positions of the heads, which are moved in place
+     * @param state the state id
+     * @param max the maximum number of transitions
+     * @param loops false if the self-loops must be left to the caller
+     * @return the number of transitions applied, in the 32 most significant bits, and the new state id, in the 32 least significant bits
+     */
+    long run(Tape[] tapes, int[] heads, int state, int max, boolean loops);
+}
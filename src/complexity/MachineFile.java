@@ -0,0 +1,185 @@
+package complexity;
+
+import complexity.Turing.TuringException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A MachineFile is the binary form of a compiled Turing machine: its input and the flat arrays of its transition table.
+ * Loading it maps the file in memory and copies every array in bulk, so no text has to be tokenized and no state has to be interned again.
+ * <p>
+ * The file starts with a header (magic number, format version, length of the body, CRC32 of the body), followed by the body, in big-endian order:
+ * <ul>
+ * <li>tapes number, initial state id, input;</li>
+ * <li>states, as length-prefixed names, and symbols;</li>
+ * <li>entries: state id, packed configuration and first action of each one;</li>
+ * <li>actions: target state id, and symbol written and direction of every tape</li>
+ * </ul>
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class MachineFile {
+    private static final int MAGIC = 0x5455524D;
+    private static final int VERSION = 1;
+    private static final int HEADER = 4 + 4 + 8 + 4;
+    final String input;
+    final TransitionTable table;
+
+    private MachineFile(String input, TransitionTable table) {
+        this.input = input;
+        this.table = table;
+    }
+
+    /**
+     * Writes a compiled Turing machine to a file, replacing its content
+     * @param path the path of the file
+     * @param input the input defined by the program of the Turing machine
+     * @param table the transition table of the Turing machine
+     * @throws IOException
+     */
+    static void write(Path path, String input, TransitionTable table) throws IOException {
+        ByteBuffer buffer = encode(input, table);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    /**
+     * Computes the checksum of a transition table, which identifies its program
+     * @param table the transition table
+     * @return the CRC32 of the compiled form of the transition table, without input
+     * @throws IOException if the transition table is too large to be compiled
+     */
+    static int checksum(TransitionTable table) throws IOException {
+        return encode("", table).getInt(HEADER-4);
+    }
+
+    private static ByteBuffer encode(String input, TransitionTable table) throws IOException {
+        long size = 4 + 4 + string(input);
+        for(String s: table.states)
+            size += string(s);
+        size += 4 + 4 + 2L*table.symbols.length;
+        size += 4 + 4L*table.entryState.length + 8L*table.entryKey.length + 4L*table.entryStart.length;
+        size += 4 + 4L*table.target.length + 2L*table.write.length + 2L*table.direction.length;
+        if(HEADER + size > Integer.MAX_VALUE)
+            throw new IOException("The Turing machine is too large to be compiled");
+        ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER + size));
+        buffer.position(HEADER);
+        buffer.putInt(table.tapesNumber).putInt(table.initialState);
+        putString(buffer, input);
+        buffer.putInt(table.states.length);
+        for(String s: table.states)
+            putString(buffer, s);
+        buffer.putInt(table.symbols.length);
+        buffer.asCharBuffer().put(table.symbols);
+        buffer.position(buffer.position() + 2*table.symbols.length);
+        buffer.putInt(table.entryState.length);
+        buffer.asIntBuffer().put(table.entryState);
+        buffer.position(buffer.position() + 4*table.entryState.length);
+        buffer.asLongBuffer().put(table.entryKey);
+        buffer.position(buffer.position() + 8*table.entryKey.length);
+        buffer.asIntBuffer().put(table.entryStart);
+        buffer.position(buffer.position() + 4*table.entryStart.length);
+        buffer.putInt(table.target.length);
+        buffer.asIntBuffer().put(table.target);
+        buffer.position(buffer.position() + 4*table.target.length);
+        buffer.asCharBuffer().put(table.write);
+        buffer.position(buffer.position() + 2*table.write.length);
+        buffer.asCharBuffer().put(table.direction);
+        CRC32 crc = new CRC32();
+        buffer.position(HEADER);
+        crc.update(buffer);
+        buffer.position(0);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(size).putInt((int) crc.getValue());
+        buffer.position(0);
+        return buffer;
+    }
+
+    /**
+     * Reads a compiled Turing machine from a file
+     * @param path the path of the file
+     * @return the compiled Turing machine
+     * @throws IOException
+     * @throws TuringException if the file is not a compiled Turing machine, it has been written by an unknown version or it is corrupted
+     */
+    static MachineFile read(Path path) throws IOException, TuringException {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() < HEADER || channel.size() > Integer.MAX_VALUE)
+                throw new TuringException("Malformed compiled machine: unexpected file size " + channel.size());
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if(buffer.getInt() != MAGIC)
+            throw new TuringException("Malformed compiled machine: it is not a compiled Turing machine");
+        int version = buffer.getInt();
+        if(version != VERSION)
+            throw new TuringException("Malformed compiled machine: unsupported version " + version);
+        long size = buffer.getLong();
+        int checksum = buffer.getInt();
+        if(size != buffer.remaining())
+            throw new TuringException("Malformed compiled machine: the file is truncated");
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        if((int) crc.getValue() != checksum)
+            throw new TuringException("Malformed compiled machine: wrong checksum");
+        buffer.position(HEADER);
+        try {
+            int tapesNumber = buffer.getInt(), initialState = buffer.getInt();
+            String input = getString(buffer);
+            String[] states = new String[buffer.getInt()];
+            for(int i=0; i<states.length; i++)
+                states[i] = getString(buffer);
+            char[] symbols = new char[buffer.getInt()];
+            buffer.asCharBuffer().get(symbols);
+            buffer.position(buffer.position() + 2*symbols.length);
+            int entries = buffer.getInt();
+            int[] entryState = new int[entries];
+            buffer.asIntBuffer().get(entryState);
+            buffer.position(buffer.position() + 4*entries);
+            long[] entryKey = new long[entries];
+            buffer.asLongBuffer().get(entryKey);
+            buffer.position(buffer.position() + 8*entries);
+            int[] entryStart = new int[entries+1];
+            buffer.asIntBuffer().get(entryStart);
+            buffer.position(buffer.position() + 4*entryStart.length);
+            int[] target = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(target);
+            buffer.position(buffer.position() + 4*target.length);
+            char[] write = new char[target.length*tapesNumber];
+            buffer.asCharBuffer().get(write);
+            buffer.position(buffer.position() + 2*write.length);
+            char[] direction = new char[write.length];
+            buffer.asCharBuffer().get(direction);
+            return new MachineFile(input, new TransitionTable(tapesNumber, initialState, states, symbols, entryState, entryKey, entryStart, target, write, direction));
+        } catch(BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException | ArithmeticException e) {
+            throw new TuringException("Malformed compiled machine: inconsistent content");
+        }
+    }
+
+    private static long string(String s) {
+        return 4 + 2L*s.length();
+    }
+
+    private static void putString(ByteBuffer buffer, String s) {
+        buffer.putInt(s.length());
+        for(int i=0; i<s.length(); i++)
+            buffer.putChar(s.charAt(i));
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        char[] ret = new char[buffer.getInt()];
+        buffer.asCharBuffer().get(ret);
+        buffer.position(buffer.position() + 2*ret.length);
+        return new String(ret);
+    }
+}
@@ -0,0 +1,145 @@
+package complexity;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Metrics object is a snapshot of what an instrumented simulation has done.
+ * The snapshot of a running simulation is approximate: the steps are counted in chunks, and the counters of the other threads of a parallel simulation may lag behind.
+ * The snapshot taken when the simulation ends is exact, except for the visits and the firings of a sampled instrumentation, which are estimates.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public final class Metrics {
+    private final boolean running;
+    private final long elapsed;
+    private final long steps;
+    private final long branches;
+    private final long dedupHits, dedupMisses;
+    private final long maxDepth, maxFrontier, maxTapeLength;
+    private final boolean estimated;
+    private final Map<String, Long> stateVisits, transitionFirings;
+
+    Metrics(boolean running, long elapsed, long steps, long branches, long dedupHits, long dedupMisses, long maxDepth, long maxFrontier, long maxTapeLength, boolean estimated, Map<String, Long> stateVisits, Map<String, Long> transitionFirings) {
+        this.running = running;
+        this.elapsed = elapsed;
+        this.steps = steps;
+        this.branches = branches;
+        this.dedupHits = dedupHits;
+        this.dedupMisses = dedupMisses;
+        this.maxDepth = maxDepth;
+        this.maxFrontier = maxFrontier;
+        this.maxTapeLength = maxTapeLength;
+        this.estimated = estimated;
+        this.stateVisits = Collections.unmodifiableMap(stateVisits);
+        this.transitionFirings = Collections.unmodifiableMap(transitionFirings);
+    }
+
+    /**
+     * Checks if the simulation was running when the snapshot has been taken
+     * @return true if the simulation was running, false if it had ended
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the time elapsed since the simulation started, until the snapshot has been taken
+     * @param unit the unit of the returned value
+     * @return the elapsed time
+     */
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of steps executed by this simulation, not counting the ones of the simulations it resumes
+     * @return the number of steps executed
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Gets the number of branches forked by non-deterministic steps: a step with n actions forks n-1 branches
+     * @return the number of branches forked
+     */
+    public long getBranches() {
+        return branches;
+    }
+
+    /**
+     * Gets the number of configurations skipped because they had already been executed
+     * @return the number of dedup hits, 0 if the simulation is not optimized
+     */
+    public long getDedupHits() {
+        return dedupHits;
+    }
+
+    /**
+     * Gets the number of configurations remembered as executed
+     * @return the number of dedup misses, 0 if the simulation is not optimized
+     */
+    public long getDedupMisses() {
+        return dedupMisses;
+    }
+
+    /**
+     * Gets the maximum number of steps from the initial configuration to the end of a branch, or to the configuration reached by a branch which has not ended yet
+     * @return the maximum depth of a branch
+     */
+    public long getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the maximum number of pending branches held by an executor: the work stack of a depth-first executor, or the queue of a breadth-first or best-first one
+     * @return the maximum size of a frontier
+     */
+    public long getMaxFrontier() {
+        return maxFrontier;
+    }
+
+    /**
+     * Gets the maximum length reached by a tape, at the end of a branch or while a branch runs
+     * @return the maximum length of a tape
+     */
+    public long getMaxTapeLength() {
+        return maxTapeLength;
+    }
+
+    /**
+     * Checks if the visits and the firings are estimates computed on a sample of the steps
+     * @return true if the visits and the firings are estimates, false if they are exact or not counted
+     */
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    /**
+     * Gets how many times every state has been visited: a visit is a step from the state, or the end of a branch in it
+     * @return the visits of every visited state, by name, empty if the instrumentation does not count steps
+     */
+    public Map<String, Long> getStateVisits() {
+        return stateVisits;
+    }
+
+    /**
+     * Gets how many times every transition has fired
+     * @return the firings of every fired transition, by rule written as in the program, empty if the instrumentation does not count steps
+     */
+    public Map<String, Long> getTransitionFirings() {
+        return transitionFirings;
+    }
+
+    @Override
+    public String toString() {
+        return "Metrics{running=" + running + ", elapsed=" + getElapsed(TimeUnit.MILLISECONDS) + "ms, steps=" + steps + ", branches=" + branches
+                + ", dedupHits=" + dedupHits + ", dedupMisses=" + dedupMisses + ", maxDepth=" + maxDepth + ", maxFrontier=" + maxFrontier
+                + ", maxTapeLength=" + maxTapeLength + ", estimated=" + estimated + ", stateVisits=" + stateVisits + ", transitionFirings=" + transitionFirings + "}";
+    }
+}
@@ -0,0 +1,329 @@
+package complexity;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A Monitor collects the metrics of an instrumented simulation.
+ * Every thread which executes the simulation records its own counters in a Recorder, without synchronization; the monitor merges the recorders whenever a snapshot is taken.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class Monitor {
+    private static final Map<ObjectName, Bean> BEANS = new ConcurrentHashMap<>();
+    private final Instrumentation instrumentation;
+    private final TransitionTable table;
+    private final VisitedStore store;
+    private final Budget budget;
+    private final long start;
+    private final long dedupHits, dedupMisses;
+    private final AtomicLong nextSample;
+    private final Queue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Recorder> local = new ThreadLocal<>();
+    /**
+     * The MBean which shows the metrics of the simulation, or null if the instrumentation is not registered
+     */
+    private final Bean bean;
+    private volatile Metrics result;
+
+    private Monitor(Instrumentation instrumentation, TransitionTable table, VisitedStore store, Budget budget) {
+        this.instrumentation = instrumentation;
+        this.table = table;
+        this.store = store;
+        this.budget = budget;
+        this.start = System.nanoTime();
+        this.dedupHits = store == null ? 0 : store.hits();
+        this.dedupMisses = store == null ? 0 : store.misses();
+        this.nextSample = new AtomicLong(start + instrumentation.interval);
+        this.bean = instrumentation.name == null ? null : BEANS.computeIfAbsent(instrumentation.name, Monitor::register);
+        if(bean != null)
+            bean.started(this);
+    }
+
+    /**
+     * Starts monitoring a simulation, if its options ask for it
+     * @param options the options of the simulation
+     * @param table the compiled program of the Turing machine
+     * @param store the store of the configurations already executed, or null if the simulation is not optimized
+     * @param budget the budget of the simulation
+     * @return the monitor of the simulation, or null if the simulation is not instrumented
+     */
+    static Monitor of(RunOptions options, TransitionTable table, VisitedStore store, Budget budget) {
+        Instrumentation instrumentation = options.getInstrumentation();
+        return instrumentation == null ? null : new Monitor(instrumentation, table, store, budget);
+    }
+
+    private static Bean register(ObjectName name) {
+        Bean ret = new Bean();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(ret, name);
+        } catch(JMException e) {
+            throw new IllegalStateException("Cannot register the MBean " + name, e);
+        }
+        return ret;
+    }
+
+    /**
+     * Gets the recorder of the calling thread
+     * @return the recorder of the calling thread
+     */
+    Recorder recorder() {
+        Recorder ret = local.get();
+        if(ret == null) {
+            ret = new Recorder(instrumentation, table);
+            local.set(ret);
+            recorders.add(ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Gives a snapshot to the listener, if the interval since the previous one has passed.
+     * Executors call it every few thousand steps; only one of the threads of a parallel simulation takes each snapshot
+     */
+    void tick() {
+        SimulationListener listener = instrumentation.listener;
+        if(listener == null)
+            return;
+        long next = nextSample.get(), now = System.nanoTime();
+        if(now - next >= 0 && nextSample.compareAndSet(next, now + instrumentation.interval))
+            listener.sampled(snapshot(true));
+    }
+
+    /**
+     * Ends the monitoring of the simulation, giving the final metrics to the listener and to the MBean, which lets the monitor go
+     * @return the final metrics of the simulation
+     */
+    Metrics finish() {
+        if(result == null) {
+            result = snapshot(false);
+            if(bean != null)
+                bean.finished(this, result);
+            if(instrumentation.listener != null)
+                instrumentation.listener.finished(result);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the current metrics of the simulation
+     * @return the final metrics if the simulation has ended, a new snapshot otherwise
+     */
+    Metrics current() {
+        Metrics ret = result;
+        return ret != null ? ret : snapshot(true);
+    }
+
+    private Metrics snapshot(boolean running) {
+        long branches = 0, maxDepth = 0, maxFrontier = 0, maxTapeLength = 0;
+        long[] visits = null, firings = null;
+        for(Recorder r: recorders) {
+            branches += r.branches;
+            maxDepth = Long.max(maxDepth, r.maxDepth);
+            maxFrontier = Long.max(maxFrontier, r.maxFrontier);
+            maxTapeLength = Long.max(maxTapeLength, r.maxTapeLength);
+            if(r.visits == null)
+                continue;
+            if(visits == null) {
+                visits = new long[r.visits.length];
+                firings = new long[r.firings.length];
+            }
+            for(int i=0; i<visits.length; i++)
+                visits[i] += r.visits[i];
+            for(int i=0; i<firings.length; i++)
+                firings[i] += r.firings[i];
+        }
+        Map<String, Long> stateVisits = new HashMap<>(), transitionFirings = new HashMap<>();
+        if(visits != null) {
+            long scale = instrumentation.period;
+            for(int i=0; i<visits.length; i++)
+                if(visits[i] != 0)
+                    stateVisits.put(table.states[i], visits[i]*scale);
+            for(int i=0; i<firings.length; i++)
+                if(firings[i] != 0)
+                    transitionFirings.put(table.rule(i), firings[i]*scale);
+        }
+        return new Metrics(running, System.nanoTime()-start, budget.steps(), branches,
+                store == null ? 0 : store.hits()-dedupHits, store == null ? 0 : store.misses()-dedupMisses,
+                maxDepth, maxFrontier, maxTapeLength, instrumentation.kind == Instrumentation.SAMPLED, stateVisits, transitionFirings);
+    }
+
+    /**
+     * A Recorder holds the counters of a single thread.
+     * The counters of branches, depth, frontier and tapes are updated when a branch forks or ends, and the counters of depth and tapes also every few thousand steps and when the executor stops, from the configuration it advances; visits and firings are updated on the counted steps
+     */
+    static final class Recorder {
+        private final int period;
+        private int countdown;
+        private final long[] visits, firings;
+        private long branches, maxDepth, maxFrontier, maxTapeLength;
+        /**
+         * True if visits and firings are counted, so the executor must report every step
+         */
+        final boolean countsSteps;
+
+        private Recorder(Instrumentation instrumentation, TransitionTable table) {
+            this.period = instrumentation.period;
+            this.countdown = period;
+            this.countsSteps = instrumentation.countsSteps();
+            this.visits = countsSteps ? new long[table.statesNumber()] : null;
+            this.firings = countsSteps ? new long[table.target.length] : null;
+        }
+
+        /**
+         * Records a step, if it is counted
+         * @param state the state of the configuration before the step
+         * @param action the action applied
+         */
+        void step(int state, int action) {
+            if(--countdown == 0) {
+                countdown = period;
+                visits[state]++;
+                firings[action]++;
+            }
+        }
+
+        /**
+         * Records a transition applied several times in a row, counting the steps which are sampled
+         * @param state the state of the configuration before the steps
+         * @param action the action applied
+         * @param n the number of steps
+         */
+        void step(int state, int action, int n) {
+            countdown -= n;
+            if(countdown <= 0) {
+                int counted = 1 + (-countdown)/period;
+                countdown += counted*period;
+                visits[state] += counted;
+                firings[action] += counted;
+            }
+        }
+
+        /**
+         * Records a non-deterministic step
+         * @param n the number of branches forked
+         * @param frontier the number of pending branches after the fork
+         */
+        void fork(int n, int frontier) {
+            branches += n;
+            if(frontier > maxFrontier)
+                maxFrontier = frontier;
+        }
+
+        /**
+         * Records the end of a branch
+         * @param c the last configuration of the branch
+         * @param visit true if the configuration is visited, false if it is skipped
+         */
+        void end(Configuration c, boolean visit) {
+            reach(c);
+            if(visit && countsSteps && --countdown == 0) {
+                countdown = period;
+                visits[c.state]++;
+            }
+        }
+
+        /**
+         * Records the depth and the tapes of a configuration which a branch has reached
+         * @param c the configuration
+         */
+        void reach(Configuration c) {
+            if(c.depth > maxDepth)
+                maxDepth = c.depth;
+            for(int m=0; m<c.tapes.length; m++)
+                if(c.tapes[m].length() > maxTapeLength)
+                    maxTapeLength = c.tapes[m].length();
+        }
+    }
+
+    /**
+     * The MBean of a registered instrumentation, which shows the metrics of the last simulation started with it.
+     * It references the monitor only while the simulation runs, and keeps just its final metrics once it has ended, so the store, the program and the configurations of the simulation can be collected
+     */
+    private static final class Bean implements SimulationMXBean {
+        private volatile Monitor monitor;
+        private volatile Metrics metrics;
+
+        synchronized void started(Monitor monitor) {
+            this.monitor = monitor;
+        }
+
+        synchronized void finished(Monitor monitor, Metrics metrics) {
+            if(this.monitor == monitor) {
+                this.metrics = metrics;
+                this.monitor = null;
+            }
+        }
+
+        private Metrics metrics() {
+            Monitor m = monitor;
+            return m != null ? m.current() : metrics;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return metrics().isRunning();
+        }
+
+        @Override
+        public long getElapsedMillis() {
+            return metrics().getElapsed(TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public long getSteps() {
+            return metrics().getSteps();
+        }
+
+        @Override
+        public long getBranches() {
+            return metrics().getBranches();
+        }
+
+        @Override
+        public long getDedupHits() {
+            return metrics().getDedupHits();
+        }
+
+        @Override
+        public long getDedupMisses() {
+            return metrics().getDedupMisses();
+        }
+
+        @Override
+        public long getMaxDepth() {
+            return metrics().getMaxDepth();
+        }
+
+        @Override
+        public long getMaxFrontier() {
+            return metrics().getMaxFrontier();
+        }
+
+        @Override
+        public long getMaxTapeLength() {
+            return metrics().getMaxTapeLength();
+        }
+
+        @Override
+        public Map<String, Long> getStateVisits() {
+            return metrics().getStateVisits();
+        }
+
+        @Override
+        public Map<String, Long> getTransitionFirings() {
+            return metrics().getTransitionFirings();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package complexity;
+
+import complexity.Turing.Output;
+import complexity.Turing.TuringException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An OutputIterator returns the outputs of a simulation as the simulation finds them.
+ * A sequential simulation advances only when the next output is requested; a parallel simulation hands its outputs over through a bounded queue, and its threads wait while the queue is full.
+ * Once the iterator has been exhausted or closed, {@link #getResult()} describes how the simulation went, so a stopped simulation can be resumed; the outputs found but not taken when the iterator has been closed are kept in the result.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public final class OutputIterator implements Iterator<Output>, AutoCloseable {
+    /**
+     * Number of outputs waiting to be taken for each thread of the pool, before the threads of a parallel simulation wait
+     */
+    private static final int QUEUE_PER_THREAD = 4;
+    private static final long POLL_MILLIS = 10;
+    private final VisitedStore set;
+    private final Budget budget;
+    private final Monitor monitor;
+    private final Executor executor;
+    private final BlockingQueue<Output> queue;
+    private final ForkJoinTask<List<Branch>> producer;
+    private final Queue<Output> untaken = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+    private boolean done;
+    private Output next;
+    private RunResult result;
+
+    OutputIterator(TransitionTable table, Branch root, RunOptions options, VisitedStore set) {
+        this.set = set;
+        this.budget = new Budget(options, 1);
+        this.monitor = Monitor.of(options, table, set, budget);
+        List<Branch> branches = Collections.singletonList(root);
+        if(options.isParallel()) {
+            this.executor = null;
+            this.queue = new ArrayBlockingQueue<>(options.getPool().getParallelism()*QUEUE_PER_THREAD);
+            ParallelExecutor parallel = new ParallelExecutor(table, set, budget, monitor, options);
+            this.producer = options.getPool().submit(() -> {
+                parallel.run(branches, options.getPool(), this::put);
+                return parallel.frontier();
+            });
+        } else {
+            this.executor = new Executor(table, set, null, budget, monitor, options);
+            this.queue = null;
+            this.producer = null;
+            executor.push(branches);
+        }
+    }
+
+    private void put(Output o) {
+        boolean interrupted = false, queued = false;
+        while(!queued && !closed) {
+            try {
+                queued = queue.offer(o, POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(!queued)
+            untaken.add(o);
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public boolean hasNext() throws TuringException {
+        if(next != null)
+            return true;
+        if(done)
+            return false;
+        if(executor != null) {
+            try {
+                next = executor.next();
+            } catch(RuntimeException e) {
+                fail();
+                throw e;
+            }
+            if(next == null) {
+                executor.close();
+                finish(executor.frontier());
+            }
+            return next != null;
+        }
+        boolean interrupted = false;
+        try {
+            while(next == null) {
+                try {
+                    next = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+                if(next == null && producer.isDone() && (next=queue.poll()) == null) {
+                    complete();
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            if(interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public Output next() throws TuringException {
+        if(!hasNext())
+            throw new NoSuchElementException();
+        Output ret = next;
+        next = null;
+        return ret;
+    }
+
+    /**
+     * Stops the simulation, if it is still running, and releases its resources.
+     * The outputs which have been found but not taken yet are kept in the result
+     */
+    @Override
+    public void close() {
+        if(done)
+            return;
+        closed = true;
+        if(next != null)
+            untaken.add(next);
+        next = null;
+        budget.stop(RunResult.Status.STOPPED);
+        if(executor != null) {
+            executor.close();
+            finish(executor.frontier());
+        } else {
+            queue.drainTo(untaken);
+            producer.quietlyJoin();
+            queue.drainTo(untaken);
+            if(producer.isCompletedNormally())
+                finish(producer.getRawResult());
+            else
+                fail();
+        }
+    }
+
+    /**
+     * Gets how the simulation went
+     * @return the statistics and the frontier of the simulation, with the outputs which have not been taken
+     * @throws IllegalStateException if the iterator has been neither exhausted nor closed, or if the simulation failed
+     */
+    public RunResult getResult() {
+        if(result == null)
+            throw new IllegalStateException(done ? "The simulation failed" : "The simulation is still running");
+        return result;
+    }
+
+    private void complete() throws TuringException {
+        if(producer.isCompletedNormally()) {
+            finish(producer.getRawResult());
+            return;
+        }
+        fail();
+        producer.join();
+    }
+
+    private void finish(List<Branch> frontier) {
+        done = true;
+        result = new RunResult(new ArrayList<>(untaken), budget.status(), budget.cycleEntry(), budget.cycleLength(), budget.halted(), budget.steps(), frontier, set, monitor == null ? null : monitor.finish());
+        if(set != null && frontier.isEmpty())
+            set.clear();
+    }
+
+    private void fail() {
+        done = true;
+        if(monitor != null)
+            monitor.finish();
+        if(set != null)
+            set.clear();
+    }
+}
@@ -0,0 +1,160 @@
+package complexity;
+
+import complexity.Turing.Output;
+import complexity.Turing.TuringException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A ParallelExecutor explores the computation tree of a Turing machine on the threads of a ForkJoinPool.
+ * Every task runs an Executor on its own subtree and offers the pending branches of its non-deterministic steps to the pool, as long as the pool is not already saturated; idle threads steal them.
+ * A ParallelExecutor performs a single exploration: once it has been stopped, it cannot be reused.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class ParallelExecutor {
+    /**
+     * Maximum number of queued tasks of a thread before new branches are explored locally
+     */
+    private static final int MAX_SURPLUS = 3;
+    private final TransitionTable table;
+    private final VisitedStore yetExecuted;
+    private final Budget budget;
+    private final Monitor monitor;
+    private final RunOptions options;
+    private Consumer<? super Output> sink;
+    private final Queue<Output> output = new ConcurrentLinkedQueue<>();
+    private final Queue<Branch> frontier = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<Output> found = new AtomicReference<>();
+
+    /**
+     * Creates a new parallel executor
+     * @param table the compiled program of the Turing machine
+     * @param yetExecuted a concurrent store of the configurations already executed, or null if branches may be re-executed
+     * @param budget the budget of the simulation
+     * @param monitor the monitor of the simulation, or null if the simulation is not instrumented
+     * @param options the options of the simulation
+     */
+    ParallelExecutor(TransitionTable table, VisitedStore yetExecuted, Budget budget, Monitor monitor, RunOptions options) {
+        this.table = table;
+        this.yetExecuted = yetExecuted;
+        this.budget = budget;
+        this.monitor = monitor;
+        this.options = options;
+    }
+
+    /**
+     * Explores the computation tree which starts from some branches, until it is completely explored or the budget stops it
+     * @param branches the branches to explore
+     * @param pool the pool which executes the branches
+     * @param sink the consumer which is given every output as soon as it is found, concurrently from several threads, or null if the outputs must be collected
+     * @return all the outputs found, in no particular order (nothing if there is a sink)
+     * @throws TuringException
+     */
+    List<Output> run(List<Branch> branches, ForkJoinPool pool, Consumer<? super Output> sink) throws TuringException {
+        this.sink = sink;
+        pool.invoke(new Root(branches, null));
+        return new ArrayList<>(output);
+    }
+
+    /**
+     * Explores the computation tree which starts from some branches until an output satisfies a predicate.
+     * As soon as such an output is found, all the outstanding branches are cancelled
+     * @param branches the branches to explore
+     * @param pool the pool which executes the branches
+     * @param predicate the predicate which must be satisfied
+     * @return the first output found which satisfies <i>predicate</i>, or null if there is no such output
+     * @throws TuringException
+     */
+    Output find(List<Branch> branches, ForkJoinPool pool, Predicate<Output> predicate) throws TuringException {
+        pool.invoke(new Root(branches, predicate));
+        return found.get();
+    }
+
+    /**
+     * Gets the branches which have not been explored because the simulation has been stopped
+     * @return the frontier of the simulation, in no particular order
+     */
+    List<Branch> frontier() {
+        return new ArrayList<>(frontier);
+    }
+
+    private final class Root extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Branch> branches;
+        private final Predicate<Output> predicate;
+
+        Root(List<Branch> branches, Predicate<Output> predicate) {
+            this.branches = branches;
+            this.predicate = predicate;
+        }
+
+        @Override
+        protected void compute() {
+            List<Task> tasks = new ArrayList<>(branches.size());
+            for(Branch b: branches)
+                tasks.add(new Task(b, predicate));
+            invokeAll(tasks);
+        }
+    }
+
+    private final class Task extends RecursiveAction implements Executor.Spawner {
+        private static final long serialVersionUID = 1L;
+        private final Branch branch;
+        private final Predicate<Output> predicate;
+        private final List<Task> forked = new ArrayList<>();
+
+        Task(Branch branch, Predicate<Output> predicate) {
+            this.branch = branch;
+            this.predicate = predicate;
+        }
+
+        @Override
+        protected void compute() {
+            Executor executor = new Executor(table, yetExecuted, this, budget, monitor, options);
+            executor.push(Collections.singletonList(branch));
+            try {
+                Output o;
+                while((o=executor.next()) != null) {
+                    if(predicate == null) {
+                        if(sink == null)
+                            output.add(o);
+                        else
+                            sink.accept(o);
+                    }
+                    else if(predicate.test(o) && found.compareAndSet(null, o))
+                        budget.stop(RunResult.Status.STOPPED);
+                }
+            } catch(RuntimeException e) {
+                budget.stop(RunResult.Status.STOPPED);
+                throw e;
+            } finally {
+                executor.close();
+            }
+            frontier.addAll(executor.frontier());
+            for(Task t: forked)
+                t.join();
+        }
+
+        @Override
+        public boolean spawn(Branch branch) {
+            if(getSurplusQueuedTaskCount() > MAX_SURPLUS)
+                return false;
+            Task t = new Task(branch, predicate);
+            forked.add(t);
+            t.fork();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package complexity;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A ProgramAnalysis describes the program of a Turing machine as it can be inspected without running it.
+ * States are reachable if a chain of rules leads to them from the initial state, whatever the symbols on the tapes; the rules of the states which are not reachable, and of the final states, can never be applied.
+ * Two states are equivalent if they have rules for the same configurations, their rules write the same symbols and move the heads the same way, in the same order, and lead to equivalent states: a simulation cannot tell them apart.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public final class ProgramAnalysis {
+    private final List<String> unreachableStates, undefinedStates;
+    private final List<String> deterministicStates, nonDeterministicStates;
+    private final Map<String, Long> missingTransitions;
+    private final List<String> deadRules, invalidRules;
+    private final Map<String, String> equivalentStates;
+
+    ProgramAnalysis(List<String> unreachableStates, List<String> undefinedStates, List<String> deterministicStates, List<String> nonDeterministicStates, Map<String, Long> missingTransitions, List<String> deadRules, List<String> invalidRules, Map<String, String> equivalentStates) {
+        this.unreachableStates = Collections.unmodifiableList(unreachableStates);
+        this.undefinedStates = Collections.unmodifiableList(undefinedStates);
+        this.deterministicStates = Collections.unmodifiableList(deterministicStates);
+        this.nonDeterministicStates = Collections.unmodifiableList(nonDeterministicStates);
+        this.missingTransitions = Collections.unmodifiableMap(missingTransitions);
+        this.deadRules = Collections.unmodifiableList(deadRules);
+        this.invalidRules = Collections.unmodifiableList(invalidRules);
+        this.equivalentStates = Collections.unmodifiableMap(equivalentStates);
+    }
+
+    /**
+     * Gets the states which have rules but cannot be reached from the initial state
+     * @return the unreachable states
+     */
+    public List<String> getUnreachableStates() {
+        return unreachableStates;
+    }
+
+    /**
+     * Gets the reachable states which are neither final nor have any rule: a simulation which reaches one of them fails
+     * @return the undefined states
+     */
+    public List<String> getUndefinedStates() {
+        return undefinedStates;
+    }
+
+    /**
+     * Gets the reachable states which have at most one rule for every configuration, so they never fork a branch
+     * @return the deterministic states
+     */
+    public List<String> getDeterministicStates() {
+        return deterministicStates;
+    }
+
+    /**
+     * Gets the reachable states which have more than one rule for some configuration
+     * @return the non-deterministic states
+     */
+    public List<String> getNonDeterministicStates() {
+        return nonDeterministicStates;
+    }
+
+    /**
+     * Gets how many configurations of the known symbols have no rule, for every reachable state which has some rules: a simulation which reaches one of them fails
+     * @return the number of missing transitions of every reachable state which has some, by state
+     */
+    public Map<String, Long> getMissingTransitions() {
+        return missingTransitions;
+    }
+
+    /**
+     * Gets the rules which can never be applied, because their state is unreachable or final
+     * @return the dead rules, written as in the program
+     */
+    public List<String> getDeadRules() {
+        return deadRules;
+    }
+
+    /**
+     * Gets the rules which move a head in an unknown direction: a simulation which applies one of them fails
+     * @return the invalid rules, written as in the program
+     */
+    public List<String> getInvalidRules() {
+        return invalidRules;
+    }
+
+    /**
+     * Gets the reachable states which are equivalent to another one, which replaces them in the minimized program
+     * @return the state which replaces every merged state, by merged state
+     */
+    public Map<String, String> getEquivalentStates() {
+        return equivalentStates;
+    }
+
+    @Override
+    public String toString() {
+        return "ProgramAnalysis{unreachableStates=" + unreachableStates + ", undefinedStates=" + undefinedStates + ", deterministicStates=" + deterministicStates
+                + ", nonDeterministicStates=" + nonDeterministicStates + ", missingTransitions=" + missingTransitions + ", deadRules=" + deadRules
+                + ", invalidRules=" + invalidRules + ", equivalentStates=" + equivalentStates + "}";
+    }
+}
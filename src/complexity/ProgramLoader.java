@@ -0,0 +1,269 @@
+package complexity;
+
+import complexity.Turing.TuringException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * A ProgramLoader reads the program of a Turing machine in a single pass and feeds its rules straight into a TransitionTable.Builder.
+ * The program is decoded in fixed-size chunks and tokenized by hand: no regular expression is used, and no String is created except for the input and for the name of every distinct state.
+ * <p>
+ * The program is read as the original parser did: the first line is the input, every other non-empty line is a rule <code>state; (symbols); (state, symbol, direction, ...)</code>,
+ * the symbols read are all the characters between the brackets except dots, commas and spaces, and the target state is everything between the bracket and the first comma.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class ProgramLoader {
+    private static final int CHUNK = 1 << 16;
+    private final TransitionTable.Builder builder;
+    private char[] line = new char[256];
+    private int lineLength;
+    private int lineNumber;
+    private boolean skipLineFeed;
+    private boolean first = true;
+    private int[] read = new int[8];
+    private char[] action = new char[16];
+    private int tapesNum = -1;
+    private String input = "";
+
+    /**
+     * Creates a new loader
+     * @param initialState the name of the initial state
+     * @param reservedSymbols symbols which can be found on the tapes even if no rule mentions them
+     */
+    ProgramLoader(String initialState, char... reservedSymbols) {
+        this.builder = new TransitionTable.Builder(initialState, reservedSymbols);
+    }
+
+    /**
+     * Reads a whole program from a channel
+     * @param channel the channel which contains the program
+     * @param charset the charset of the program
+     * @return this loader
+     * @throws IOException
+     * @throws TuringException
+     */
+    ProgramLoader read(ReadableByteChannel channel, Charset charset) throws IOException, TuringException {
+        CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(CHUNK);
+        CharBuffer chars = CharBuffer.allocate(CHUNK);
+        boolean eof = false;
+        CoderResult r;
+        while(!eof) {
+            eof = channel.read(bytes) < 0;
+            bytes.flip();
+            do {
+                r = decoder.decode(bytes, chars, eof);
+                drain(chars);
+            } while(r.isOverflow());
+            bytes.compact();
+        }
+        do {
+            r = decoder.flush(chars);
+            drain(chars);
+        } while(r.isOverflow());
+        end();
+        return this;
+    }
+
+    /**
+     * Reads a whole program from a sequence of characters
+     * @param program the program
+     * @return this loader
+     * @throws TuringException
+     */
+    ProgramLoader read(CharSequence program) throws TuringException {
+        char[] chunk = new char[Integer.min(CHUNK, program.length())];
+        for(int from=0; from<program.length(); from+=chunk.length) {
+            int to = Integer.min(program.length(), from+chunk.length);
+            if(program instanceof String)
+                ((String) program).getChars(from, to, chunk, 0);
+            else
+                for(int i=from; i<to; i++)
+                    chunk[i-from] = program.charAt(i);
+            accept(chunk, 0, to-from);
+        }
+        end();
+        return this;
+    }
+
+    /**
+     * Gets the input defined by the program
+     * @return the input defined by the program
+     */
+    String input() {
+        return input;
+    }
+
+    /**
+     * Gets the number of tapes of the program
+     * @return the number of tapes of the program
+     */
+    int tapesNumber() {
+        return tapesNum;
+    }
+
+    /**
+     * Compiles the rules which have been read
+     * @return the transition table of the program
+     * @throws TuringException if the program has no rule
+     */
+    TransitionTable table() throws TuringException {
+        if(tapesNum < 1)
+            throw new TuringException("Every Turing machine must have at least 1 tape");
+        return builder.build(tapesNum);
+    }
+
+    private void drain(CharBuffer chars) throws TuringException {
+        chars.flip();
+        accept(chars.array(), chars.arrayOffset()+chars.position(), chars.arrayOffset()+chars.limit());
+        chars.clear();
+    }
+
+    /**
+     * Splits a chunk of the program into lines, as BufferedReader.readLine does.
+     * Lines which lie entirely in the chunk are parsed in place, the others are gathered in the line buffer
+     */
+    private void accept(char[] chunk, int from, int to) throws TuringException {
+        int start = from;
+        for(int i=from; i<to; i++) {
+            char c = chunk[i];
+            if(c == '\n' && skipLineFeed) {
+                skipLineFeed = false;
+                start = i+1;
+                continue;
+            }
+            skipLineFeed = false;
+            if(c != '\n' && c != '\r')
+                continue;
+            skipLineFeed = c == '\r';
+            if(lineLength == 0)
+                parse(chunk, start, i);
+            else {
+                append(chunk, start, i);
+                parse(line, 0, lineLength);
+                lineLength = 0;
+            }
+            start = i+1;
+        }
+        append(chunk, start, to);
+    }
+
+    private void append(char[] chunk, int from, int to) {
+        if(lineLength+to-from > line.length)
+            line = Arrays.copyOf(line, Integer.max(lineLength+to-from, line.length*2));
+        System.arraycopy(chunk, from, line, lineLength, to-from);
+        lineLength += to-from;
+    }
+
+    private void end() throws TuringException {
+        if(lineLength > 0) {
+            parse(line, 0, lineLength);
+            lineLength = 0;
+        }
+        skipLineFeed = false;
+    }
+
+    private void parse(char[] l, int from, int to) throws TuringException {
+        lineNumber++;
+        int s = trimStart(l, from, to), e = trimEnd(l, s, to);
+        if(first) {
+            input = new String(l, s, e-s);
+            first = false;
+            return;
+        }
+        if(s == e)
+            return;
+        int p0 = indexOf(l, ';', s, e), p1 = p0 < 0 ? -1 : indexOf(l, ';', p0+1, e), p2 = p1 < 0 ? -1 : indexOf(l, ';', p1+1, e);
+        if(p1 < 0 || (p2 < 0 ? p1+1 == e : p2 == p1+1) || !only(l, ';', p2 < 0 ? e : p2, e))
+            throw malformed(l, from, s, e, s, "check the following line: ");
+        int end3 = p2 < 0 ? e : p2;
+        int stateFrom = trimStart(l, s, p0), stateTo = trimEnd(l, stateFrom, p0);
+        int oldFrom = trimStart(l, p0+1, p1), oldTo = trimEnd(l, oldFrom, p1);
+        if(oldFrom == oldTo || l[oldFrom] != '(' || l[oldTo-1] != ')')
+            throw malformed(l, from, s, e, oldFrom, "the following configuration must be enclosed between two brackets: ");
+        int tapes = 0;
+        for(int i=oldFrom+1; i<oldTo-1; i++) {
+            char c = l[i];
+            if(c == '.' || c == ',' || c == ' ')
+                continue;
+            if(tapes == read.length)
+                read = Arrays.copyOf(read, tapes*2);
+            read[tapes++] = builder.symbol(c);
+        }
+        if(tapesNum == -1)
+            tapesNum = tapes;
+        else if(tapesNum != tapes)
+            throw malformed(l, from, s, e, oldFrom, "the number of tapes must be the same in all the instructions");
+        int newFrom = trimStart(l, p1+1, end3), newTo = trimEnd(l, newFrom, end3);
+        if(newFrom == newTo || l[newFrom] != '(' || l[newTo-1] != ')')
+            throw malformed(l, from, s, e, newFrom, "the following relation must be enclosed between two brackets: ");
+        int comma = indexOf(l, ',', newFrom+1, newTo-1);
+        int targetTo = comma < 0 ? newTo-1 : comma;
+        if(comma >= 0 && only(l, ',', newFrom+1, newTo-1))
+            throw malformed(l, from, s, e, newFrom, "check the relation of the following line: ");
+        int length = 0;
+        if(action.length < 2*tapesNum)
+            action = Arrays.copyOf(action, 2*tapesNum);
+        for(int i=targetTo; i<newTo-1; ) {
+            int partFrom = i+1, partTo = indexOf(l, ',', partFrom, newTo-1);
+            if(partTo < 0)
+                partTo = newTo-1;
+            int a = trimStart(l, partFrom, partTo), b = trimEnd(l, a, partTo);
+            for(int j=a; j<b; j++) {
+                if(length == action.length)
+                    action = Arrays.copyOf(action, length*2);
+                action[length++] = l[j];
+            }
+            i = partTo;
+        }
+        if(length != tapesNum*2)
+            throw malformed(l, from, s, e, newFrom, "check the relation of the following line: ");
+        for(int j=0; j<length; j+=2)
+            builder.symbol(action[j]);
+        int state = builder.state(l, stateFrom, stateTo);
+        int target = builder.state(l, newFrom+1, targetTo);
+        builder.rule(state, read, target, action, tapesNum);
+    }
+
+    private TuringException malformed(char[] l, int lineFrom, int s, int e, int at, String message) {
+        String ret = "Malformed input at line " + lineNumber + ", column " + (at-lineFrom+1) + ": " + message;
+        return new TuringException(message.endsWith(": ") ? ret + new String(l, s, e-s) : ret);
+    }
+
+    private static int trimStart(char[] l, int from, int to) {
+        while(from < to && l[from] <= ' ')
+            from++;
+        return from;
+    }
+
+    private static int trimEnd(char[] l, int from, int to) {
+        while(to > from && l[to-1] <= ' ')
+            to--;
+        return to;
+    }
+
+    private static int indexOf(char[] l, char c, int from, int to) {
+        for(int i=from; i<to; i++)
+            if(l[i] == c)
+                return i;
+        return -1;
+    }
+
+    private static boolean only(char[] l, char c, int from, int to) {
+        for(int i=from; i<to; i++)
+            if(l[i] != c)
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,430 @@
+package complexity;
+
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RunOptions collects the settings of a simulation of a Turing machine.
+ * A RunOptions object is immutable: every method which changes a setting returns a new object.
+ * 
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public final class RunOptions {
+
+    /**
+     * Enumeration of how much of the final configuration is kept in every Output
+     */
+    public static enum Detail {
+        /**
+         * The final state, a snapshot of all the tapes and the position of all the heads
+         */
+        FULL,
+        /**
+         * The final state and the position of all the heads, without the tapes
+         */
+        HEADS,
+        /**
+         * The final state only
+         */
+        STATE
+    }
+    private Dedup dedup;
+    private ForkJoinPool pool;
+    private long maxSteps = Long.MAX_VALUE;
+    private long timeLimit = Long.MAX_VALUE;
+    private long maxBranches = Long.MAX_VALUE;
+    private int maxTapeLength = Integer.MAX_VALUE;
+    private Detail outputDetail = Detail.FULL;
+    private Strategy strategy = Strategy.depthFirst();
+    private Instrumentation instrumentation;
+    private boolean accelerate;
+    private boolean detectCycles;
+    private boolean stopOnCycle;
+    private boolean compile;
+    private Path checkpoint;
+    private long checkpointInterval = Long.MAX_VALUE;
+
+    private RunOptions() {
+    }
+
+    private RunOptions(RunOptions options) {
+        this.dedup = options.dedup;
+        this.pool = options.pool;
+        this.maxSteps = options.maxSteps;
+        this.timeLimit = options.timeLimit;
+        this.maxBranches = options.maxBranches;
+        this.maxTapeLength = options.maxTapeLength;
+        this.outputDetail = options.outputDetail;
+        this.strategy = options.strategy;
+        this.instrumentation = options.instrumentation;
+        this.accelerate = options.accelerate;
+        this.detectCycles = options.detectCycles;
+        this.stopOnCycle = options.stopOnCycle;
+        this.compile = options.compile;
+        this.checkpoint = options.checkpoint;
+        this.checkpointInterval = options.checkpointInterval;
+    }
+
+    /**
+     * Creates the options of a simulation which explores the branches sequentially, depth-first, on the calling thread
+     * @return the options of a sequential simulation
+     */
+    public static RunOptions sequential() {
+        return new RunOptions();
+    }
+
+    /**
+     * Creates the options of a simulation which spreads the non-deterministic branches across the threads of a ForkJoinPool.
+     * The outputs are the same of the sequential simulation, but their order is unspecified.
+     * @param pool the pool which executes the branches
+     * @return the options of a parallel simulation
+     */
+    public static RunOptions parallel(ForkJoinPool pool) {
+        if(pool == null)
+            throw new NullPointerException("pool");
+        RunOptions ret = new RunOptions();
+        ret.pool = pool;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options with the given optimization setting.
+     * An optimized simulation remembers the fingerprints of the executed configurations (see {@link Dedup#fingerprints()})
+     * @param optimize true if don't want to re-execute branches, false otherwise
+     * @return the new options
+     */
+    public RunOptions optimize(boolean optimize) {
+        if(optimize)
+            checkDedup();
+        RunOptions ret = new RunOptions(this);
+        ret.dedup = optimize ? Dedup.fingerprints() : null;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options for an optimized simulation which remembers the executed configurations as described by <i>dedup</i>
+     * @param dedup how the executed configurations are remembered
+     * @return the new options
+     */
+    public RunOptions dedup(Dedup dedup) {
+        if(dedup == null)
+            throw new NullPointerException("dedup");
+        checkDedup();
+        RunOptions ret = new RunOptions(this);
+        ret.dedup = dedup;
+        return ret;
+    }
+
+    private void checkDedup() {
+        if(strategy.kind == Strategy.ITERATIVE_DEEPENING)
+            throw new IllegalArgumentException("An iterative deepening simulation cannot be optimized");
+    }
+
+    /**
+     * Returns a copy of these options which explore the computation tree with another strategy.
+     * Only the depth-first strategy can be used by a parallel simulation, and an iterative deepening simulation cannot be optimized
+     * @param strategy the order in which the branches are explored
+     * @return the new options
+     */
+    public RunOptions strategy(Strategy strategy) {
+        if(strategy == null)
+            throw new NullPointerException("strategy");
+        if(isParallel() && !strategy.isDepthFirst())
+            throw new IllegalArgumentException("A parallel simulation can only explore the branches depth-first");
+        if(isOptimize() && strategy.kind == Strategy.ITERATIVE_DEEPENING)
+            throw new IllegalArgumentException("An iterative deepening simulation cannot be optimized");
+        RunOptions ret = new RunOptions(this);
+        ret.strategy = strategy;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options which stop the simulation after <i>maxSteps</i> transitions.
+     * A parallel simulation never exceeds the limit, but it may stop slightly before reaching it
+     * @param maxSteps the maximum number of transitions
+     * @return the new options
+     */
+    public RunOptions maxSteps(long maxSteps) {
+        if(maxSteps < 0)
+            throw new IllegalArgumentException("maxSteps must not be negative");
+        RunOptions ret = new RunOptions(this);
+        ret.maxSteps = maxSteps;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options which stop the simulation when it has been running for the given time
+     * @param time the maximum duration of the simulation
+     * @param unit the unit of <i>time</i>
+     * @return the new options
+     */
+    public RunOptions timeLimit(long time, TimeUnit unit) {
+        if(time < 0)
+            throw new IllegalArgumentException("time must not be negative");
+        RunOptions ret = new RunOptions(this);
+        ret.timeLimit = unit.toNanos(time);
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options which stop the simulation when more than <i>maxBranches</i> branches are waiting to be explored or are being explored
+     * @param maxBranches the maximum number of live branches
+     * @return the new options
+     */
+    public RunOptions maxBranches(long maxBranches) {
+        if(maxBranches < 1)
+            throw new IllegalArgumentException("maxBranches must be positive");
+        RunOptions ret = new RunOptions(this);
+        ret.maxBranches = maxBranches;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options which stop the simulation when a head is about to read beyond the first <i>maxTapeLength</i> cells of its tape
+     * @param maxTapeLength the maximum length of every tape, initial symbol included
+     * @return the new options
+     */
+    public RunOptions maxTapeLength(int maxTapeLength) {
+        if(maxTapeLength < 1)
+            throw new IllegalArgumentException("maxTapeLength must be positive");
+        RunOptions ret = new RunOptions(this);
+        ret.maxTapeLength = maxTapeLength;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options which keep only part of the final configuration in every Output.
+     * Snapshotting the tapes is usually the largest cost of an Output: the tapes of a reduced Output are null, and so are its heads if only the state is kept
+     * @param outputDetail how much of the final configuration is kept
+     * @return the new options
+     */
+    public RunOptions outputDetail(Detail outputDetail) {
+        if(outputDetail == null)
+            throw new NullPointerException("outputDetail");
+        RunOptions ret = new RunOptions(this);
+        ret.outputDetail = outputDetail;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options which record the metrics of the simulation
+     * @param instrumentation which metrics are recorded and where they are published, or null if the simulation must not be instrumented
+     * @return the new options
+     */
+    public RunOptions instrument(Instrumentation instrumentation) {
+        RunOptions ret = new RunOptions(this);
+        ret.instrumentation = instrumentation;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options with the given acceleration setting.
+     * An accelerated simulation applies a deterministic self-loop which doesn't change the symbols it reads, like <i>s; (1, _); (s, 1, R, _, -)</i>, in a single jump over the run of cells it would scan, and still counts every transition.
+     * Only a depth-first or iterative deepening simulation which is not optimized is accelerated: an optimized simulation must remember every configuration, and the other strategies interleave the steps of different branches
+     * @param accelerate true if the self-loops must be applied in a single jump, false otherwise
+     * @return the new options
+     */
+    public RunOptions accelerate(boolean accelerate) {
+        RunOptions ret = new RunOptions(this);
+        ret.accelerate = accelerate;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options with the given cycle detection setting.
+     * A simulation which detects cycles runs Brent's algorithm on every deterministic stretch of a branch, keeping only two configurations which share their tapes with the branch, and an optimized one checks if the configurations it has already executed come from the same stretch.
+     * A branch which is proven to loop forever is dropped, and the simulation reports where the cycle of the first one starts and how long it is; the simulation ends with status LOOP if no branch reaches a final state, which is always the case of a deterministic machine which loops, or as soon as a branch loops if {@link #stopOnCycle(boolean)} asks for it
+     * @param detectCycles true if the branches must be checked for cycles, false otherwise
+     * @return the new options
+     */
+    public RunOptions detectCycles(boolean detectCycles) {
+        RunOptions ret = new RunOptions(this);
+        ret.detectCycles = detectCycles;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options which tell whether a simulation which detects cycles stops with status LOOP as soon as a branch is proven to loop forever, dropping the outputs the other branches may still reach
+     * @param stopOnCycle true if the first cycle stops the simulation, false if only the looping branch is dropped
+     * @return the new options
+     */
+    public RunOptions stopOnCycle(boolean stopOnCycle) {
+        RunOptions ret = new RunOptions(this);
+        ret.stopOnCycle = stopOnCycle;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options with the given compilation setting.
+     * A compiled simulation generates, once for every program, a class which runs its deterministic rules without looking them up, and lets the interpreter take over at every non-deterministic, undefined or final configuration, so the outputs and the counted steps are the same.
+     * Only a depth-first or iterative deepening simulation which is neither optimized, nor instrumented to count the steps, nor checked for cycles is compiled, since all of them must see every single step
+     * @param compile true if the deterministic rules must be compiled to bytecode, false otherwise
+     * @return the new options
+     */
+    public RunOptions compile(boolean compile) {
+        RunOptions ret = new RunOptions(this);
+        ret.compile = compile;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of these options which save the whole state of the simulation to a file, every time the given interval has passed and when the simulation ends, so that it can be resumed by {@link Turing#resume(Path, RunOptions)} even after the JVM has been stopped.
+     * The outputs found since the previous checkpoint are appended to a second file, named after <i>path</i> with the <code>.outputs</code> suffix, and then the state file is atomically replaced, so a checkpoint interrupted by a crash leaves the previous one intact.
+     * Only the outputs are saved incrementally: every checkpoint rewrites the whole frontier, with its tapes, and the whole store of the executed configurations of an optimized simulation, so the interval is stretched to nine times the time taken by the previous checkpoint whenever that is longer, which keeps the checkpoints within a tenth of the run.
+     * Only the sequential simulations run by {@link Turing#simulate(String, RunOptions)}, {@link Turing#simulate(String, RunOptions, java.util.function.Consumer)} and the resume methods are checkpointed, and not by iterative deepening; the outputs given to a consumer are not saved
+     * @param path the path of the checkpoint, or null to disable checkpoints
+     * @param interval the minimum time between two checkpoints
+     * @param unit the unit of <i>interval</i>
+     * @return the new options
+     */
+    public RunOptions checkpoint(Path path, long interval, TimeUnit unit) {
+        if(interval < 0)
+            throw new IllegalArgumentException("interval must not be negative");
+        RunOptions ret = new RunOptions(this);
+        ret.checkpoint = path;
+        ret.checkpointInterval = unit.toNanos(interval);
+        return ret;
+    }
+
+    /**
+     * Checks if the simulation doesn't re-execute branches
+     * @return true if the simulation doesn't re-execute branches, false otherwise
+     */
+    public boolean isOptimize() {
+        return dedup != null;
+    }
+
+    /**
+     * Gets how an optimized simulation remembers the executed configurations
+     * @return the dedup of an optimized simulation, null if the simulation is not optimized
+     */
+    public Dedup getDedup() {
+        return dedup;
+    }
+
+    /**
+     * Checks if the simulation explores the branches in parallel
+     * @return true if the simulation explores the branches in parallel, false otherwise
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Gets the pool which executes the branches of a parallel simulation
+     * @return the pool of a parallel simulation, null for a sequential one
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Gets the maximum number of transitions of the simulation
+     * @return the maximum number of transitions, Long.MAX_VALUE if there is no limit
+     */
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * Gets the maximum duration of the simulation
+     * @param unit the unit of the returned value
+     * @return the maximum duration of the simulation, Long.MAX_VALUE if there is no limit
+     */
+    public long getTimeLimit(TimeUnit unit) {
+        return timeLimit == Long.MAX_VALUE ? Long.MAX_VALUE : unit.convert(timeLimit, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the maximum number of live branches of the simulation
+     * @return the maximum number of live branches, Long.MAX_VALUE if there is no limit
+     */
+    public long getMaxBranches() {
+        return maxBranches;
+    }
+
+    /**
+     * Gets the maximum length of every tape
+     * @return the maximum length of every tape, Integer.MAX_VALUE if there is no limit
+     */
+    public int getMaxTapeLength() {
+        return maxTapeLength;
+    }
+
+    /**
+     * Gets how much of the final configuration is kept in every Output
+     * @return the detail of the outputs
+     */
+    public Detail getOutputDetail() {
+        return outputDetail;
+    }
+
+    /**
+     * Gets the order in which the branches are explored
+     * @return the strategy of the simulation
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Gets which metrics of the simulation are recorded
+     * @return the instrumentation of the simulation, null if the simulation is not instrumented
+     */
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Checks if the simulation applies the self-loops in a single jump
+     * @return true if the simulation is accelerated, false otherwise
+     */
+    public boolean isAccelerate() {
+        return accelerate;
+    }
+
+    /**
+     * Checks if the simulation checks the branches for cycles
+     * @return true if the simulation detects cycles, false otherwise
+     */
+    public boolean isDetectCycles() {
+        return detectCycles;
+    }
+
+    /**
+     * Checks if the first branch proven to loop forever stops the simulation
+     * @return true if the first cycle stops the simulation, false otherwise
+     */
+    public boolean isStopOnCycle() {
+        return stopOnCycle;
+    }
+
+    /**
+     * Checks if the simulation runs the deterministic rules compiled to bytecode
+     * @return true if the simulation is compiled, false otherwise
+     */
+    public boolean isCompile() {
+        return compile;
+    }
+
+    /**
+     * Gets the path where the simulation is checkpointed
+     * @return the path of the checkpoint, null if the simulation is not checkpointed
+     */
+    public Path getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Gets the minimum time between two checkpoints
+     * @param unit the unit of the returned value
+     * @return the interval between two checkpoints, Long.MAX_VALUE if the simulation is checkpointed only when it ends
+     */
+    public long getCheckpointInterval(TimeUnit unit) {
+        return checkpointInterval == Long.MAX_VALUE ? Long.MAX_VALUE : unit.convert(checkpointInterval, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,180 @@
+package complexity;
+
+import complexity.Turing.Output;
+import java.util.List;
+
+/**
+ * A RunResult describes a simulation of a Turing machine: its outputs, how it ended and how the executed configurations have been remembered.
+ * A simulation stopped by a limit of its options can be resumed from its frontier with {@link Turing#resume(RunResult, RunOptions)}.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public final class RunResult {
+
+    /**
+     * Enumeration of the ways a simulation can end
+     */
+    public static enum Status {
+        /**
+         * The computation tree has been completely explored
+         */
+        COMPLETE,
+        /**
+         * The simulation has been stopped because the wanted output has been found
+         */
+        STOPPED,
+        /**
+         * The simulation has reached the maximum number of steps
+         */
+        STEP_LIMIT,
+        /**
+         * The simulation has reached its time limit
+         */
+        TIME_LIMIT,
+        /**
+         * The simulation has too many live branches
+         */
+        BRANCH_LIMIT,
+        /**
+         * A head was about to read beyond the maximum length of its tape
+         */
+        TAPE_LIMIT,
+        /**
+         * Some branches loop forever, since a deterministic stretch has reached again one of its configurations, and they have been dropped: either no other branch has reached a final state, or the options asked to stop the simulation at the first cycle
+         */
+        LOOP
+    }
+
+    private final List<Output> outputs;
+    private final Status status;
+    private final long cycleEntry, cycleLength;
+    /**
+     * True if some branch has reached a final state, even if its output has already been taken
+     */
+    final boolean halted;
+    private final long steps;
+    private final List<Branch> frontier;
+    private final VisitedStore yetExecuted;
+    private final long dedupHits, dedupMisses, dedupEvictions;
+    private final Metrics metrics;
+
+    RunResult(List<Output> outputs, Status status, long cycleEntry, long cycleLength, boolean halted, long steps, List<Branch> frontier, VisitedStore yetExecuted, Metrics metrics) {
+        this.outputs = outputs;
+        this.status = status;
+        this.cycleEntry = cycleEntry;
+        this.cycleLength = cycleLength;
+        this.halted = halted;
+        this.steps = steps;
+        this.frontier = frontier;
+        this.yetExecuted = frontier.isEmpty() ? null : yetExecuted;
+        this.dedupHits = yetExecuted == null ? 0 : yetExecuted.hits();
+        this.dedupMisses = yetExecuted == null ? 0 : yetExecuted.misses();
+        this.dedupEvictions = yetExecuted == null ? 0 : yetExecuted.evictions();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the outputs of the simulation
+     * @return a list of all the outputs found by the simulation (if the simulation is optimized then the list will contains only the executed branches outputs)
+     */
+    public List<Output> getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * Gets how the simulation ended
+     * @return the status of the simulation
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Checks if the computation tree has been completely explored
+     * @return true if the computation tree has been completely explored, false otherwise
+     */
+    public boolean isComplete() {
+        return status == Status.COMPLETE;
+    }
+
+    /**
+     * Gets the step at which the first branch found to loop reached for the first time a configuration of its cycle, counted from the initial configuration.
+     * The cycle is searched from the last non-deterministic step of the branch, or from the step at which this simulation has started exploring it if it has been resumed; a branch may loop even if the simulation is complete, when other branches have reached a final state
+     * @return the entry step of the cycle, -1 if no branch has been found to loop
+     */
+    public long getCycleEntry() {
+        return cycleEntry;
+    }
+
+    /**
+     * Gets the number of steps after which the first branch found to loop reaches again the same configuration
+     * @return the length of the cycle, -1 if no branch has been found to loop
+     */
+    public long getCycleLength() {
+        return cycleLength;
+    }
+
+    /**
+     * Gets the number of transitions applied by the simulation, including the ones of the simulations it resumes
+     * @return the number of steps of the simulation
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Gets the branches which have not been explored because the simulation has been stopped
+     * @return the frontier of the simulation, empty if the simulation is complete
+     */
+    public List<Branch> getFrontier() {
+        return frontier;
+    }
+
+    /**
+     * Gets the store of the executed configurations, which a resumed simulation keeps using
+     * @return the store of the executed configurations, null if the simulation is not optimized or has no frontier
+     */
+    VisitedStore getVisitedStore() {
+        return yetExecuted;
+    }
+
+    /**
+     * Gets the number of configurations which have not been executed because they had already been executed
+     * @return the number of hits of the dedup, 0 if the simulation is not optimized
+     */
+    public long getDedupHits() {
+        return dedupHits;
+    }
+
+    /**
+     * Gets the number of configurations which have been executed for the first time
+     * @return the number of misses of the dedup, 0 if the simulation is not optimized
+     */
+    public long getDedupMisses() {
+        return dedupMisses;
+    }
+
+    /**
+     * Gets the number of configurations which have been forgotten by a bounded dedup to make room for new ones
+     * @return the number of evictions of the dedup, 0 if the dedup is not bounded
+     */
+    public long getDedupEvictions() {
+        return dedupEvictions;
+    }
+
+    /**
+     * Gets the metrics recorded by an instrumented simulation
+     * @return the final metrics of the simulation, null if the simulation is not instrumented
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return outputs.toString();
+    }
+}
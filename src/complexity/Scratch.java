@@ -0,0 +1,31 @@
+package complexity;
+
+import complexity.datastructure.Tape;
+import java.util.ArrayDeque;
+
+/**
+ * A Scratch holds the buffers which a thread reuses across the simulations of a batch: the tapes and the heads of the initial configuration and the work stack of the executor.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class Scratch {
+    Tape[] tapes;
+    int[] heads;
+    final ArrayDeque<Branch> stack = new ArrayDeque<>();
+
+    Scratch(int tapesNumber) {
+        this.tapes = new Tape[tapesNumber];
+        this.heads = new int[tapesNumber];
+    }
+
+    /**
+     * Gives up the tapes and the heads, which are still referenced by the frontier of a stopped simulation
+     */
+    void detach() {
+        tapes = new Tape[tapes.length];
+        heads = new int[heads.length];
+    }
+}
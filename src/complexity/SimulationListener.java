@@ -0,0 +1,26 @@
+package complexity;
+
+/**
+ * A SimulationListener is given the metrics of an instrumented simulation while it runs.
+ * The listener is called on the threads which execute the simulation, so it must be thread-safe and quick: the simulation does not advance while it runs.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public interface SimulationListener {
+
+    /**
+     * Receives the metrics of a running simulation, at most once per interval of its Instrumentation
+     * @param metrics the metrics recorded so far
+     */
+    void sampled(Metrics metrics);
+
+    /**
+     * Receives the metrics of a simulation which has ended, completely or because it has been stopped
+     * @param metrics the final metrics of the simulation
+     */
+    default void finished(Metrics metrics) {
+    }
+}
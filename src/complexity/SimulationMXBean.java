@@ -0,0 +1,81 @@
+package complexity;
+
+import java.util.Map;
+
+/**
+ * A SimulationMXBean publishes through JMX the metrics of the last simulation started with a registered {@link Instrumentation}.
+ * Every attribute is read from a new snapshot of the metrics, so the attributes of a running simulation may be slightly out of step with each other.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public interface SimulationMXBean {
+
+    /**
+     * Checks if the simulation is running
+     * @return true if the simulation is running, false if it has ended
+     */
+    boolean isRunning();
+
+    /**
+     * Gets the time elapsed since the simulation started, until it ended
+     * @return the elapsed time in milliseconds
+     */
+    long getElapsedMillis();
+
+    /**
+     * Gets the number of steps executed
+     * @return the number of steps executed
+     */
+    long getSteps();
+
+    /**
+     * Gets the number of branches forked by non-deterministic steps
+     * @return the number of branches forked
+     */
+    long getBranches();
+
+    /**
+     * Gets the number of configurations skipped because they had already been executed
+     * @return the number of dedup hits
+     */
+    long getDedupHits();
+
+    /**
+     * Gets the number of configurations remembered as executed
+     * @return the number of dedup misses
+     */
+    long getDedupMisses();
+
+    /**
+     * Gets the maximum number of steps from the initial configuration to the end of a branch, or to the configuration reached by a branch which has not ended yet
+     * @return the maximum depth of a branch
+     */
+    long getMaxDepth();
+
+    /**
+     * Gets the maximum number of pending branches held by an executor
+     * @return the maximum size of a frontier
+     */
+    long getMaxFrontier();
+
+    /**
+     * Gets the maximum length reached by a tape
+     * @return the maximum length of a tape
+     */
+    long getMaxTapeLength();
+
+    /**
+     * Gets how many times every state has been visited
+     * @return the visits of every visited state, by name
+     */
+    Map<String, Long> getStateVisits();
+
+    /**
+     * Gets how many times every transition has fired
+     * @return the firings of every fired transition, by rule
+     */
+    Map<String, Long> getTransitionFirings();
+}
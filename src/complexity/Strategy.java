@@ -0,0 +1,78 @@
+package complexity;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A Strategy describes the order in which a sequential simulation explores the branches of the computation tree of a non-deterministic Turing machine.
+ * Depth-first exploration needs the least memory, but it never leaves a branch which does not halt; the other strategies find an output even if some branches never halt, as long as the output exists.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public final class Strategy {
+    static final int DEPTH_FIRST = 0, BREADTH_FIRST = 1, ITERATIVE_DEEPENING = 2, BEST_FIRST = 3;
+    private static final Strategy DEPTH_FIRST_STRATEGY = new Strategy(DEPTH_FIRST, 0, null);
+    private static final Strategy BREADTH_FIRST_STRATEGY = new Strategy(BREADTH_FIRST, 0, null);
+    final int kind;
+    final long initialDepth;
+    final ToDoubleFunction<Branch> heuristic;
+
+    private Strategy(int kind, long initialDepth, ToDoubleFunction<Branch> heuristic) {
+        this.kind = kind;
+        this.initialDepth = initialDepth;
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Follows every branch until it halts before exploring the next one, in the same order in which the branches appear in the transition table.
+     * It is the default strategy, and the only one which can be used by a parallel simulation
+     * @return the depth-first strategy
+     */
+    public static Strategy depthFirst() {
+        return DEPTH_FIRST_STRATEGY;
+    }
+
+    /**
+     * Advances all the branches one step at a time, so the outputs are found in order of number of steps: the first output is the one of the shortest computation.
+     * Sibling branches share the content of their tapes until they write on them
+     * @return the breadth-first strategy
+     */
+    public static Strategy breadthFirst() {
+        return BREADTH_FIRST_STRATEGY;
+    }
+
+    /**
+     * Explores the tree depth-first up to a maximum number of steps, and starts again with a doubled maximum as long as some branch has been cut.
+     * The outputs are found in order of number of steps, as with the breadth-first strategy, but only the branches of a path are kept in memory.
+     * An iterative deepening simulation cannot be optimized, and it has no frontier when it is stopped
+     * @param initialDepth the maximum number of steps of the first iteration
+     * @return the iterative deepening strategy
+     */
+    public static Strategy iterativeDeepening(long initialDepth) {
+        if(initialDepth < 1)
+            throw new IllegalArgumentException("initialDepth must be positive");
+        return new Strategy(ITERATIVE_DEEPENING, initialDepth, null);
+    }
+
+    /**
+     * Always advances the branch with the lowest score, by one step.
+     * Every branch is scored when it is created, after its first transition has been applied; branches with the same score are explored in order of creation
+     * @param heuristic the function which scores a branch from its configuration
+     * @return the best-first strategy
+     */
+    public static Strategy bestFirst(ToDoubleFunction<Branch> heuristic) {
+        if(heuristic == null)
+            throw new NullPointerException("heuristic");
+        return new Strategy(BEST_FIRST, 0, heuristic);
+    }
+
+    /**
+     * Checks if this is the depth-first strategy
+     * @return true if the branches are explored depth-first without limits, false otherwise
+     */
+    public boolean isDepthFirst() {
+        return kind == DEPTH_FIRST;
+    }
+}
@@ -0,0 +1,528 @@
+package complexity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A TransitionTable is the compiled form of the program of a Turing machine.
+ * States and tape symbols are interned into dense int ids and every (state, configuration) pair is resolved to a range of pre-decoded actions, so that a simulation step needs neither String allocation nor hashing.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+final class TransitionTable {
+    /**
+     * Move codes of the pre-decoded actions
+     */
+    static final byte MOVE_LEFT = -1, MOVE_STAY = 0, MOVE_RIGHT = 1, MOVE_INVALID = 2;
+    /**
+     * Returned by the lookup methods when nothing is defined
+     */
+    static final int UNDEFINED = -1;
+    private static final int MAX_DENSE_ENTRIES = 1 << 22;
+
+    final int tapesNumber;
+    final int initialState;
+    /**
+     * Name of every interned state, indexed by state id
+     */
+    final String[] states;
+    /**
+     * Final state of every interned state, indexed by state id (null if the state is not final)
+     */
+    final Turing.FINAL_STATE[] finals;
+    /**
+     * True if at least one rule starts from the state, indexed by state id
+     */
+    final boolean[] defined;
+    /**
+     * Every interned tape symbol, indexed by symbol id
+     */
+    final char[] symbols;
+    private final int[] symbolIds;
+    private final long configurations;
+    private final int[] dense;
+    private final long[] sparseKeys;
+    private final int[] sparseValues;
+    /**
+     * Actions of the entry <i>e</i> are the ones in [entryStart[e], entryStart[e+1])
+     */
+    final int[] entryStart;
+    /**
+     * Target state id of every action
+     */
+    final int[] target;
+    /**
+     * Symbol written on tape <i>m</i> by action <i>a</i>, at index a*tapesNumber+m
+     */
+    final char[] write;
+    /**
+     * Move code of tape <i>m</i> for action <i>a</i>, at index a*tapesNumber+m
+     */
+    final byte[] move;
+    /**
+     * Direction character of tape <i>m</i> for action <i>a</i>, at index a*tapesNumber+m
+     */
+    final char[] direction;
+
+    /**
+     * True if the action is the only one of its entry, goes back to the non-final state of the entry and writes on every tape the symbol it reads: such a self-loop is applied again as long as the moving heads read the same symbols
+     */
+    final boolean[] loop;
+
+    /**
+     * Symbol read on tape <i>m</i> by the entry <i>e</i> is the digit m (most significant first) of entryKey[e], in base symbols.length
+     */
+    final long[] entryKey;
+    /**
+     * State id of every entry
+     */
+    final int[] entryState;
+    private Kernel kernel;
+    private boolean compiled;
+
+    /**
+     * Creates a transition table from its flat representation
+     * @param tapesNumber the number of tapes of the Turing machine
+     * @param initialState the id of the initial state
+     * @param states the name of every state, which must include the final states
+     * @param symbols every tape symbol
+     * @param entryState the state id of every entry
+     * @param entryKey the packed configuration of every entry
+     * @param entryStart the first action of every entry, followed by the number of actions
+     * @param target the target state id of every action
+     * @param write the symbol written on every tape by every action
+     * @param direction the direction character of every tape for every action
+     */
+    TransitionTable(int tapesNumber, int initialState, String[] states, char[] symbols, int[] entryState, long[] entryKey, int[] entryStart, int[] target, char[] write, char[] direction) {
+        this.tapesNumber = tapesNumber;
+        this.initialState = initialState;
+        this.states = states;
+        this.symbols = symbols;
+        this.entryState = entryState;
+        this.entryKey = entryKey;
+        this.entryStart = entryStart;
+        this.target = target;
+        this.write = write;
+        this.direction = direction;
+        this.finals = new Turing.FINAL_STATE[states.length];
+        for(Turing.FINAL_STATE f: Turing.FINAL_STATE.values())
+            for(int i=0; i<states.length; i++)
+                if(states[i].equals(f.toString()))
+                    finals[i] = f;
+        this.defined = new boolean[states.length];
+        for(int state: entryState)
+            defined[state] = true;
+        int maxSymbol = 0;
+        for(char c: symbols)
+            maxSymbol = Integer.max(maxSymbol, c);
+        this.symbolIds = new int[maxSymbol+1];
+        Arrays.fill(symbolIds, UNDEFINED);
+        for(int i=0; i<symbols.length; i++)
+            symbolIds[symbols[i]] = i;
+        this.configurations = configurations(symbols.length, tapesNumber);
+        long total = Math.multiplyExact(configurations, states.length);
+        if(total <= MAX_DENSE_ENTRIES) {
+            this.dense = new int[(int) total];
+            Arrays.fill(dense, UNDEFINED);
+            this.sparseKeys = null;
+            this.sparseValues = null;
+        } else {
+            int capacity = Integer.highestOneBit(Integer.max(entryState.length, 1)*2)*2;
+            this.dense = null;
+            this.sparseKeys = new long[capacity];
+            this.sparseValues = new int[capacity];
+            Arrays.fill(sparseValues, UNDEFINED);
+        }
+        for(int e=0; e<entryState.length; e++)
+            put(entryState[e]*configurations + entryKey[e], e);
+        this.move = new byte[direction.length];
+        for(int i=0; i<direction.length; i++)
+            move[i] = decodeMove(direction[i]);
+        this.loop = new boolean[target.length];
+        for(int e=0; e<entryState.length; e++)
+            if(entryStart[e+1]-entryStart[e] == 1 && target[entryStart[e]] == entryState[e] && finals[entryState[e]] == null)
+                loop[entryStart[e]] = keepsSymbols(entryStart[e], entryKey[e]);
+    }
+
+    private boolean keepsSymbols(int action, long key) {
+        for(int m=tapesNumber-1; m>=0; m--, key/=symbols.length)
+            if(write[action*tapesNumber+m] != symbols[(int) (key % symbols.length)] || move[action*tapesNumber+m] == MOVE_INVALID)
+                return false;
+        return true;
+    }
+
+    private static long configurations(int symbolsNumber, int tapesNumber) {
+        long ret = 1;
+        for(int i=0; i<tapesNumber; i++)
+            ret = Math.multiplyExact(ret, symbolsNumber);
+        return ret;
+    }
+
+    /**
+     * Rebuilds the relations of the Turing machine, in the form in which they are written by its program: state, symbols read, target state, and the symbols written each followed by its direction.
+     * The keys are put in the order in which the program first mentions them and always appended, as the original parser did, so that the maps iterate in the same order as its maps
+     * @return the relations of the Turing machine
+     */
+    Map<String, Map<String, Map<String,List<String>>>> relations() {
+        Map<String, Map<String, Map<String,List<String>>>> ret = new HashMap<>();
+        char[] read = new char[tapesNumber];
+        char[] action = new char[tapesNumber*2];
+        for(int e=0; e<entryState.length; e++) {
+            long key = entryKey[e];
+            for(int m=tapesNumber-1; m>=0; m--, key/=symbols.length)
+                read[m] = symbols[(int) (key % symbols.length)];
+            Map<String, Map<String,List<String>>> rel = ret.get(states[entryState[e]]);
+            if(rel == null)
+                ret.put(states[entryState[e]], rel = new HashMap<>());
+            Map<String,List<String>> trans = new HashMap<>();
+            rel.put(new String(read), trans);
+            for(int a=entryStart[e]; a<entryStart[e+1]; a++) {
+                for(int m=0; m<tapesNumber; m++) {
+                    action[2*m] = write[a*tapesNumber+m];
+                    action[2*m+1] = direction[a*tapesNumber+m];
+                }
+                List<String> allConfig = trans.get(states[target[a]]);
+                if(allConfig == null)
+                    trans.put(states[target[a]], allConfig = new ArrayList<>());
+                allConfig.add(new String(action));
+            }
+        }
+        return ret;
+    }
+
+    private static byte decodeMove(char dir) {
+        switch(dir) {
+            case Turing.rightDirection:
+                return MOVE_RIGHT;
+            case Turing.leftDirection:
+                return MOVE_LEFT;
+            case Turing.stopDirection:
+                return MOVE_STAY;
+            default:
+                return MOVE_INVALID;
+        }
+    }
+
+    private static int mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private void put(long key, int entry) {
+        if(dense != null) {
+            dense[(int) key] = entry;
+            return;
+        }
+        int mask = sparseKeys.length-1;
+        int i = mix(key) & mask;
+        while(sparseValues[i] != UNDEFINED)
+            i = (i+1) & mask;
+        sparseKeys[i] = key;
+        sparseValues[i] = entry;
+    }
+
+    /**
+     * Returns the id of a tape symbol
+     * @param c the tape symbol
+     * @return the id of <i>c</i>, or UNDEFINED if no rule mentions it
+     */
+    int symbolId(char c) {
+        return c < symbolIds.length ? symbolIds[c] : UNDEFINED;
+    }
+
+    /**
+     * Packs the next symbol of a configuration into a partial key
+     * @param key the partial key built so far (0 for the first tape)
+     * @param c the symbol read on the next tape
+     * @return the new partial key, or UNDEFINED if <i>c</i> is unknown
+     */
+    long pack(long key, char c) {
+        int id = symbolId(c);
+        return id == UNDEFINED ? UNDEFINED : key*symbols.length + id;
+    }
+
+    /**
+     * Finds the entry of a (state, configuration) pair
+     * @param state the state id
+     * @param key the packed configuration
+     * @return the entry, or UNDEFINED if nothing is defined
+     */
+    int find(int state, long key) {
+        if(key < 0)
+            return UNDEFINED;
+        long k = state*configurations + key;
+        if(dense != null)
+            return dense[(int) k];
+        int mask = sparseKeys.length-1;
+        int i = mix(k) & mask, entry;
+        while((entry=sparseValues[i]) != UNDEFINED) {
+            if(sparseKeys[i] == k)
+                return entry;
+            i = (i+1) & mask;
+        }
+        return UNDEFINED;
+    }
+
+    /**
+     * Writes an action as the rule of the program which defines it
+     * @param action the action id
+     * @return the rule, e.g. <code>q0; (1, _); (q1, 1, R, 0, -)</code>
+     */
+    String rule(int action) {
+        int lo = 0, hi = entryStart.length-2;
+        while(lo < hi) {
+            int mid = (lo+hi+1) >>> 1;
+            if(entryStart[mid] <= action)
+                lo = mid;
+            else
+                hi = mid-1;
+        }
+        char[] read = new char[tapesNumber];
+        long key = entryKey[lo];
+        for(int m=tapesNumber-1; m>=0; m--, key/=symbols.length)
+            read[m] = symbols[(int) (key % symbols.length)];
+        StringBuilder ret = new StringBuilder(states[entryState[lo]]).append("; (");
+        for(int m=0; m<tapesNumber; m++)
+            ret.append(m == 0 ? "" : ", ").append(read[m]);
+        ret.append("); (").append(states[target[action]]);
+        for(int m=0; m<tapesNumber; m++)
+            ret.append(", ").append(write[action*tapesNumber+m]).append(", ").append(direction[action*tapesNumber+m]);
+        return ret.append(")").toString();
+    }
+
+    /**
+     * Returns the number of interned states
+     * @return the number of interned states
+     */
+    int statesNumber() {
+        return states.length;
+    }
+
+    /**
+     * Returns the deterministic rules compiled to bytecode, compiling them the first time
+     * @return the compiled rules, or null if they cannot be compiled
+     */
+    synchronized Kernel kernel() {
+        if(!compiled) {
+            kernel = Jit.compile(this);
+            compiled = true;
+        }
+        return kernel;
+    }
+
+    /**
+     * A Builder collects the rules of a Turing machine one at a time, interning states and symbols as they come, and compiles them into a transition table.
+     * Names are looked up directly from char ranges, so a String is created only once for every distinct state.
+     * The actions of every entry are ordered as the original parser did: grouped by target state, in HashMap order, and in program order within a group
+     */
+    static final class Builder {
+        private String[] names = new String[16];
+        private int[] nameSlots = new int[32];
+        private int statesNumber;
+        private int[] symbolIds = new int[128];
+        private final StringBuilder symbols = new StringBuilder();
+        private int tapes = -1;
+        private int rules;
+        private int[] ruleState = new int[64];
+        private int[] ruleTarget = new int[64];
+        private int[] ruleRead = new int[64];
+        private char[] ruleAction = new char[128];
+
+        /**
+         * Creates a new builder
+         * @param initialState the name of the initial state
+         * @param reservedSymbols symbols which can be found on the tapes even if no rule mentions them
+         */
+        Builder(String initialState, char... reservedSymbols) {
+            Arrays.fill(nameSlots, UNDEFINED);
+            state(initialState.toCharArray(), 0, initialState.length());
+            for(Turing.FINAL_STATE f: Turing.FINAL_STATE.values())
+                state(f.toString().toCharArray(), 0, f.toString().length());
+            for(char c: reservedSymbols)
+                symbol(c);
+        }
+
+        /**
+         * Interns the name of a state
+         * @param chars the characters which contain the name
+         * @param from the index of the first character of the name
+         * @param to the index after the last character of the name
+         * @return the id of the state
+         */
+        int state(char[] chars, int from, int to) {
+            int h = 0;
+            for(int i=from; i<to; i++)
+                h = 31*h + chars[i];
+            int mask = nameSlots.length-1;
+            for(int i=mix(h) & mask, id; (id=nameSlots[i]) != UNDEFINED; i=(i+1) & mask)
+                if(matches(names[id], chars, from, to))
+                    return id;
+            if(statesNumber == names.length)
+                names = Arrays.copyOf(names, statesNumber*2);
+            names[statesNumber] = new String(chars, from, to-from);
+            if(2*(statesNumber+1) > nameSlots.length)
+                rehash();
+            else {
+                int i = mix(h) & mask;
+                while(nameSlots[i] != UNDEFINED)
+                    i = (i+1) & mask;
+                nameSlots[i] = statesNumber;
+            }
+            return statesNumber++;
+        }
+
+        private static boolean matches(String name, char[] chars, int from, int to) {
+            if(name.length() != to-from)
+                return false;
+            for(int i=0; i<name.length(); i++)
+                if(name.charAt(i) != chars[from+i])
+                    return false;
+            return true;
+        }
+
+        private void rehash() {
+            nameSlots = new int[nameSlots.length*2];
+            Arrays.fill(nameSlots, UNDEFINED);
+            int mask = nameSlots.length-1;
+            for(int id=0; id<=statesNumber; id++) {
+                int i = mix(names[id].hashCode()) & mask;
+                while(nameSlots[i] != UNDEFINED)
+                    i = (i+1) & mask;
+                nameSlots[i] = id;
+            }
+        }
+
+        /**
+         * Interns a tape symbol
+         * @param c the tape symbol
+         * @return the id of the symbol
+         */
+        int symbol(char c) {
+            if(c >= symbolIds.length)
+                symbolIds = Arrays.copyOf(symbolIds, Integer.max(c+1, symbolIds.length*2));
+            int id = symbolIds[c];
+            if(id == 0) {
+                symbols.append(c);
+                symbolIds[c] = id = symbols.length();
+            }
+            return id-1;
+        }
+
+        /**
+         * Adds a rule
+         * @param state the id of the state from which the rule starts
+         * @param read the ids of the symbols read on every tape, in the first <i>tapesNumber</i> cells
+         * @param target the id of the target state
+         * @param action the symbol written on every tape followed by its direction, in the first 2*<i>tapesNumber</i> cells
+         * @param tapesNumber the number of tapes, which must be the same for all the rules
+         */
+        void rule(int state, int[] read, int target, char[] action, int tapesNumber) {
+            if(tapes == -1)
+                tapes = tapesNumber;
+            if(rules == ruleState.length) {
+                ruleState = Arrays.copyOf(ruleState, rules*2);
+                ruleTarget = Arrays.copyOf(ruleTarget, rules*2);
+            }
+            if((rules+1)*tapes > ruleRead.length)
+                ruleRead = Arrays.copyOf(ruleRead, Integer.max((rules+1)*tapes, ruleRead.length*2));
+            if((rules+1)*tapes*2 > ruleAction.length)
+                ruleAction = Arrays.copyOf(ruleAction, Integer.max((rules+1)*tapes*2, ruleAction.length*2));
+            ruleState[rules] = state;
+            ruleTarget[rules] = target;
+            System.arraycopy(read, 0, ruleRead, rules*tapes, tapes);
+            System.arraycopy(action, 0, ruleAction, rules*tapes*2, tapes*2);
+            rules++;
+        }
+
+        /**
+         * Compiles the rules added so far
+         * @param tapesNumber the number of tapes of the Turing machine
+         * @return the transition table
+         */
+        TransitionTable build(int tapesNumber) {
+            String[] states = Arrays.copyOf(names, statesNumber);
+            int symbolsNumber = symbols.length();
+            long configurations = configurations(symbolsNumber, tapesNumber);
+            Math.multiplyExact(configurations, statesNumber);
+            int capacity = Integer.highestOneBit(Integer.max(rules, 1)*2)*2;
+            long[] slotKeys = new long[capacity];
+            int[] slotEntries = new int[capacity];
+            Arrays.fill(slotEntries, UNDEFINED);
+            int[] entryOf = new int[rules];
+            int[] entryState = new int[rules];
+            long[] entryKey = new long[rules];
+            int[] count = new int[rules+1];
+            int entries = 0;
+            for(int r=0; r<rules; r++) {
+                long key = 0;
+                for(int m=0; m<tapesNumber; m++)
+                    key = key*symbolsNumber + ruleRead[r*tapesNumber+m];
+                long k = ruleState[r]*configurations + key;
+                int i = mix(k) & (capacity-1), e;
+                while((e=slotEntries[i]) != UNDEFINED && slotKeys[i] != k)
+                    i = (i+1) & (capacity-1);
+                if(e == UNDEFINED) {
+                    e = slotEntries[i] = entries++;
+                    slotKeys[i] = k;
+                    entryState[e] = ruleState[r];
+                    entryKey[e] = key;
+                }
+                entryOf[r] = e;
+                count[e+1]++;
+            }
+            int[] entryStart = new int[entries+1];
+            for(int e=0; e<entries; e++)
+                entryStart[e+1] = entryStart[e] + count[e+1];
+            int[] next = Arrays.copyOf(entryStart, entries);
+            int[] order = new int[rules];
+            for(int r=0; r<rules; r++)
+                order[next[entryOf[r]]++] = r;
+            for(int e=0; e<entries; e++)
+                groupByTarget(order, entryStart[e], entryStart[e+1], states);
+            int[] target = new int[rules];
+            char[] write = new char[rules*tapesNumber];
+            char[] direction = new char[rules*tapesNumber];
+            for(int a=0; a<rules; a++) {
+                int r = order[a];
+                target[a] = ruleTarget[r];
+                for(int m=0; m<tapesNumber; m++) {
+                    write[a*tapesNumber+m] = ruleAction[(r*tapesNumber+m)*2];
+                    direction[a*tapesNumber+m] = ruleAction[(r*tapesNumber+m)*2+1];
+                }
+            }
+            char[] symbolsArray = new char[symbolsNumber];
+            symbols.getChars(0, symbolsNumber, symbolsArray, 0);
+            return new TransitionTable(tapesNumber, 0, states, symbolsArray, Arrays.copyOf(entryState, entries), Arrays.copyOf(entryKey, entries), entryStart, target, write, direction);
+        }
+
+        private void groupByTarget(int[] order, int from, int to, String[] states) {
+            boolean same = true;
+            for(int a=from+1; a<to && same; a++)
+                same = ruleTarget[order[a]] == ruleTarget[order[from]];
+            if(same)
+                return;
+            Map<String, Integer> groups = new HashMap<>();
+            for(int a=from; a<to; a++)
+                groups.putIfAbsent(states[ruleTarget[order[a]]], 0);
+            int[] start = new int[groups.size()+1];
+            int rank = 0;
+            for(Map.Entry<String, Integer> g: groups.entrySet())
+                g.setValue(rank++);
+            int[] ranks = new int[to-from];
+            for(int a=from; a<to; a++)
+                start[(ranks[a-from]=groups.get(states[ruleTarget[order[a]]]))+1]++;
+            for(int g=0; g<rank; g++)
+                start[g+1] += start[g];
+            int[] sorted = new int[to-from];
+            for(int a=from; a<to; a++)
+                sorted[start[ranks[a-from]]++] = order[a];
+            System.arraycopy(sorted, 0, order, from, sorted.length);
+        }
+    }
+}
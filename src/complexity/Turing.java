@@ -1,18 +1,28 @@
 package complexity;
 
-import complexity.datastructure.Bulk;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import complexity.datastructure.Tape;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A Non-Deterministic Multi-Tape Turing machine is like a Turing machine but it has several tapes and its set of rules may prescribe more than one action to be performed for any given situation
@@ -40,15 +50,15 @@ public class Turing {
         public final FINAL_STATE state;
         /**
          * It is a snapshot of all the tapes when the Turing machine stopped.
-         * The array has length equals to the number of tapes of the Turing machine that generated this Output object
+         * The array has length equals to the number of tapes of the Turing machine that generated this Output object, or it is null if the simulation didn't keep the tapes (see {@link RunOptions#outputDetail(RunOptions.Detail)})
          */
         public final String[] tapes;
         /**
          * It contains the position of all the heads on the tapes when the Turing machine stopped.
-         * The array has length equals to the number of tapes of the Turing machine that generated this Output object
+         * The array has length equals to the number of tapes of the Turing machine that generated this Output object, or it is null if the simulation kept only the state (see {@link RunOptions#outputDetail(RunOptions.Detail)})
          */
         public final int[] heads;
-        private Output(FINAL_STATE state, String[] tapes, int[] heads) {
+        Output(FINAL_STATE state, String[] tapes, int[] heads) {
             this.state = state;
             this.tapes = tapes;
             this.heads = heads;
@@ -70,11 +80,11 @@ public class Turing {
         }
     }
     private static final char blankSymbol = '_', initialSymbol = '>';
-    private static final char rightDirection = 'R', leftDirection = 'L', stopDirection = '-';
+    static final char rightDirection = 'R', leftDirection = 'L', stopDirection = '-';
     private static final String initialState = "s";
     private final String input;
     private final int tapesNumber;
-    private final Map<String, Map<String, Map<String,List<String>>>> relations = new HashMap<>();
+    private final TransitionTable table;
 
     /**
      * Creates a new Turing machine which implements the program specified by the content of the file <i>filePath</i>
@@ -84,60 +94,87 @@ public class Turing {
      */
     
     public Turing(String filePath) throws IOException, TuringException {
-        BufferedReader br = new BufferedReader(new FileReader(filePath));
-        String line, inp = "";
-        int tapesNum = -1;
-        boolean first = true;
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if(first) {
-                inp = line;
-                first = false;
-                continue;
-            }
-            if(line.isEmpty())
-                continue;
-            String[] split = line.split(";");
-            if(split.length != 3)
-                throw new TuringException("Malformed input: check the following line: " + line);                
-            String state = split[0].trim();
-            String oldConfig = split[1].trim();
-            if(!oldConfig.substring(0,1).equals("(") || !oldConfig.substring(oldConfig.length()-1).equals(")"))
-                throw new TuringException("Malformed input: the following configuration must be enclosed between two brackets: " + line);
-            oldConfig = oldConfig.substring(1, oldConfig.length()-1).replaceAll("\\.","").replaceAll(",", "").replaceAll(" ", "");
-            if(tapesNum == -1)
-                tapesNum = oldConfig.length();
-            else if(tapesNum != oldConfig.length())
-                throw new TuringException("Malformed input: the number of tapes must be the same in all the instructions");
-            Map<String, Map<String, List<String>>> rel;
-            Map<String, List<String>> trans;
-            if((rel=relations.get(state)) == null) {
-                rel = new HashMap<>();
-                trans = new HashMap<>();
-            } else if((trans = rel.get(oldConfig)) == null)
-                trans = new HashMap<>();
-            String newConfig = split[2].trim();
-            if(!newConfig.substring(0,1).equals("(") || !newConfig.substring(newConfig.length()-1).equals(")"))
-                throw new TuringException("Malformed input: the following relation must be enclosed between two brackets: " + line);
-            split = newConfig.substring(1, newConfig.length()-1).split(",");
-            String newState = split[0];
-            newConfig = "";
-            for(int i=1; i<split.length; i++)
-                newConfig += split[i].trim();
-            if(newConfig.length() != tapesNum*2)
-                throw new TuringException("Malformed input: check the relation of the following line: " + line);
-            List<String> allConfig;
-            if((allConfig=trans.get(newState)) == null)
-                allConfig = new ArrayList<>();
-            allConfig.add(newConfig);
-            trans.put(newState, allConfig);
-            rel.put(oldConfig, trans);
-            relations.put(state, rel);
+        this(Paths.get(filePath));
+    }
+
+    /**
+     * Creates a new Turing machine which implements the program specified by the content of the file <i>path</i>, written in the default charset.
+     * The program is read in a single pass, and every malformed line is reported with its line and column
+     * @param path path of the program of the Turing machine
+     * @throws IOException
+     * @throws TuringException
+     */
+    
+    public Turing(Path path) throws IOException, TuringException {
+        this(read(path));
+    }
+
+    /**
+     * Creates a new Turing machine which implements the program read from a stream, written in the default charset.
+     * The stream is read until its end, but it is not closed
+     * @param in the stream which contains the program of the Turing machine
+     * @throws IOException
+     * @throws TuringException
+     */
+    
+    public Turing(InputStream in) throws IOException, TuringException {
+        this(newLoader().read(Channels.newChannel(in), Charset.defaultCharset()));
+    }
+
+    private Turing(ProgramLoader loader) throws TuringException {
+        this(loader.table(), loader.input());
+    }
+
+    private Turing(TransitionTable table, String input) {
+        this.table = table;
+        this.input = input;
+        this.tapesNumber = table.tapesNumber;
+    }
+
+    /**
+     * Creates a new Turing machine which implements a program
+     * @param program the program of the Turing machine, in the same format of a program file
+     * @return the new Turing machine
+     * @throws TuringException
+     */
+    
+    public static Turing parse(CharSequence program) throws TuringException {
+        return new Turing(newLoader().read(program));
+    }
+
+    /**
+     * Loads a Turing machine which has been compiled by {@link #save(Path)}.
+     * The file is mapped in memory and the compiled program is copied in bulk, without parsing it again; the loaded Turing machine has the same program, input and behaviour of the saved one
+     * @param path path of the compiled Turing machine
+     * @return the loaded Turing machine
+     * @throws IOException
+     * @throws TuringException if the file is not a compiled Turing machine, it has been compiled by an unsupported version or it is corrupted
+     */
+    
+    public static Turing load(Path path) throws IOException, TuringException {
+        MachineFile file = MachineFile.read(path);
+        return new Turing(file.table, file.input);
+    }
+
+    /**
+     * Saves the compiled form of this Turing machine, which can be loaded by {@link #load(Path)} much faster than the program can be parsed.
+     * The file has a version header and a checksum, and it is replaced if it already exists
+     * @param path path of the compiled Turing machine
+     * @throws IOException
+     */
+    
+    public void save(Path path) throws IOException {
+        MachineFile.write(path, input, table);
+    }
+
+    private static ProgramLoader newLoader() {
+        return new ProgramLoader(initialState, initialSymbol, blankSymbol);
+    }
+
+    private static ProgramLoader read(Path path) throws IOException, TuringException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return newLoader().read(channel, Charset.defaultCharset());
         }
-        this.input = inp;
-        if(tapesNum < 1)
-            throw new TuringException("Every Turing machine must have at least 1 tape");
-        this.tapesNumber = tapesNum;
     }
 
     /**
@@ -158,11 +195,29 @@ public class Turing {
         return tapesNumber;
     }
     
+    /**
+     * Analyzes the program of this Turing machine without running it: it finds the unreachable and undefined states, the missing transitions, the dead and invalid rules, which states are deterministic and which ones are equivalent
+     * @return the analysis of the program
+     */
+    public ProgramAnalysis analyze() {
+        return new Analyzer(table).analysis();
+    }
+
+    /**
+     * Returns a Turing machine with the same input and an equivalent program, without the rules which can never be applied and with every class of equivalent states merged into one of its states (see {@link ProgramAnalysis#getEquivalentStates()}).
+     * Its simulations have the same outputs in the same order and the same number of steps; an optimized simulation may skip more branches, since the configurations of merged states become the same
+     * @return the minimized Turing machine
+     */
+    public Turing minimize() {
+        return new Turing(new Analyzer(table).minimized(), input);
+    }
+
     /**
      * Generates the program of the Turing machine on-the-fly and returns it.
      * @return the program of the Turing machine
      */
     public String getProgram() {
+        Map<String, Map<String, Map<String,List<String>>>> relations = table.relations();
         String[] states = new String[relations.size()];
         relations.keySet().toArray(states);
         Comparator<String> charComparator = (String a,String b) -> {
@@ -191,7 +246,7 @@ public class Turing {
             return a.compareTo(b);
         };
         Arrays.sort(states,statesComparator);
-        String ret = "";
+        StringBuilder ret = new StringBuilder();
         for(String state: states) {
             Map<String, Map<String, List<String>>> trans = relations.get(state);
             String[] conf = new String[trans.keySet().size()];
@@ -210,7 +265,7 @@ public class Turing {
                     for(String newConfig: newConfigs) {
                         String hRel = newConfig.replaceAll("", ", ");
                         hRel = hRel.substring(2, hRel.length()-2);
-                        ret += state + "; (" + hConf  + "); (" + newState + "; " + hRel + ")\n";                                        
+                        ret.append(state).append("; (").append(hConf).append("); (").append(newState).append("; ").append(hRel).append(")\n");
                     }
                 }
             }
@@ -218,14 +273,6 @@ public class Turing {
         return ret.substring(0, ret.length()-1);
     }
     
-    private static String encodeCurrentConfiguration(String s) {
-        String ret = "(";
-        char[] c = s.toCharArray();
-        for(int i=0; i<c.length; i++)
-            ret += c[i] + ", ";
-        return ret.substring(0, ret.length()-2) + ")";
-    }
-    
     /**
      * Runs a complete simulation
      * @return a list of all the outputs of the simulation
@@ -267,77 +314,317 @@ public class Turing {
      */
     
     public List<Output> run(String input, boolean optimize) throws TuringException {
-        String[] tapes = new String[tapesNumber];
-        int[] heads = new int[tapesNumber];
-        for(int i=0; i<tapes.length; i++) {
-            tapes[i] = initialSymbol + (i==0 ? input : "");
-            heads[i] = 0;
-        }
-        List<Output> output;
-        Set<Bulk> set;
-        run(tapes, heads, initialState, (output=new ArrayList<>()), optimize ? (set=new HashSet<>()) : (set=null));
-        if(set != null)
-            set.clear();
-        return output;
-    }
-    
-    private void run(String[] tapes, int[] heads, String state, List<Output> output, Set<Bulk> yetExecuted) throws TuringException {
-        if(yetExecuted != null) {
-            Bulk b;
-            if(yetExecuted.contains((b=new Bulk(state, tapes, heads))))
-                return;
-            yetExecuted.add(b);
+        return run(input, RunOptions.sequential().optimize(optimize));
+    }
+    
+    /**
+     * Runs a simulation with the default input and customized options
+     * @param options the options of the simulation
+     * @return a list of all the outputs of the simulation
+     * @throws TuringException
+     */
+    
+    public List<Output> run(RunOptions options) throws TuringException {
+        return run(input, options);
+    }
+    
+    /**
+     * Runs a simulation with a customized input and customized options.
+     * A parallel simulation returns the same outputs of the sequential one, but in no particular order
+     * @param input customized input without initial symbol
+     * @param options the options of the simulation
+     * @return a list of all the outputs of the simulation (if the simulation is optimized then the list will contains only the executed branches outputs)
+     * @throws TuringException
+     */
+    
+    public List<Output> run(String input, RunOptions options) throws TuringException {
+        return simulate(input, options).getOutputs();
+    }
+    
+    /**
+     * Runs a simulation with a customized input and customized options, and describes how it went.
+     * A parallel simulation returns the same outputs of the sequential one, but in no particular order
+     * @param input customized input without initial symbol
+     * @param options the options of the simulation
+     * @return the outputs and the statistics of the simulation
+     * @throws TuringException
+     */
+    
+    public RunResult simulate(String input, RunOptions options) throws TuringException {
+        VisitedStore set = options.isOptimize() ? options.getDedup().newStore(options.isParallel()) : null;
+        List<Output> output = new ArrayList<>();
+        return simulate(Collections.singletonList(new Branch(table, initialConfiguration(input, null), Branch.NONE)), options, new Budget(options, 1), set, output, null, 0, null, Checkpoint.of(options, table, output, 0, null));
+    }
+    
+    /**
+     * Runs a simulation with a customized input and customized options, giving every output to a consumer as soon as it is found instead of collecting them.
+     * The simulation goes on only while the consumer returns, so a slow consumer slows down the simulation.
+     * A parallel simulation calls the consumer concurrently from several threads
+     * @param input customized input without initial symbol
+     * @param options the options of the simulation
+     * @param sink the consumer of the outputs
+     * @return the statistics of the simulation, without outputs
+     * @throws TuringException
+     */
+    
+    public RunResult simulate(String input, RunOptions options, Consumer<? super Output> sink) throws TuringException {
+        if(sink == null)
+            throw new NullPointerException("sink");
+        VisitedStore set = options.isOptimize() ? options.getDedup().newStore(options.isParallel()) : null;
+        List<Output> output = new ArrayList<>();
+        return simulate(Collections.singletonList(new Branch(table, initialConfiguration(input, null), Branch.NONE)), options, new Budget(options, 1), set, output, sink, 0, null, Checkpoint.of(options, table, output, 0, null));
+    }
+    
+    /**
+     * Runs a simulation with a customized input and customized options lazily: the outputs are found only as they are requested.
+     * A sequential simulation advances only while the next output is requested, and returns the outputs in the same order of {@link #run(String, RunOptions)}; a parallel one keeps running until a few outputs are waiting to be taken, and returns them in no particular order.
+     * The iterator must be closed if it is not exhausted
+     * @param input customized input without initial symbol
+     * @param options the options of the simulation
+     * @return the iterator of the outputs
+     * @throws TuringException
+     */
+    
+    public OutputIterator iterator(String input, RunOptions options) throws TuringException {
+        VisitedStore set = options.isOptimize() ? options.getDedup().newStore(options.isParallel()) : null;
+        return new OutputIterator(table, new Branch(table, initialConfiguration(input, null), Branch.NONE), options, set);
+    }
+    
+    /**
+     * Runs a simulation with a customized input and customized options lazily, as described by {@link #iterator(String, RunOptions)}.
+     * Closing the stream stops the simulation
+     * @param input customized input without initial symbol
+     * @param options the options of the simulation
+     * @return the stream of the outputs
+     * @throws TuringException
+     */
+    
+    public Stream<Output> stream(String input, RunOptions options) throws TuringException {
+        OutputIterator it = iterator(input, options);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.NONNULL | (options.isParallel() ? 0 : Spliterator.ORDERED)), false).onClose(it::close);
+    }
+    
+    /**
+     * Runs a simulation reusing the buffers of a previous one
+     * @param input customized input without initial symbol
+     * @param options the options of the simulation
+     * @param scratch the reusable buffers of the calling thread, or null
+     * @return the outputs and the statistics of the simulation
+     * @throws TuringException
+     */
+    
+    RunResult simulate(String input, RunOptions options, Scratch scratch) throws TuringException {
+        VisitedStore set = options.isOptimize() ? options.getDedup().newStore(options.isParallel()) : null;
+        RunResult ret = simulate(Collections.singletonList(new Branch(table, initialConfiguration(input, scratch), Branch.NONE)), options, new Budget(options, 1), set, new ArrayList<>(), null, 0, scratch, null);
+        if(scratch != null && !ret.getFrontier().isEmpty())
+            scratch.detach();
+        return ret;
+    }
+    
+    /**
+     * Runs a simulation for every input of a stream, on the threads of the common ForkJoinPool.
+     * The results are returned in the order of the inputs, and only a few of them are held in memory at once
+     * @param inputs customized inputs without initial symbol
+     * @return the stream of the results, one for each input
+     */
+    
+    public Stream<BatchResult> runAll(Stream<String> inputs) {
+        return runAll(inputs.iterator(), RunOptions.sequential(), ForkJoinPool.commonPool(), true);
+    }
+    
+    /**
+     * Runs a simulation for every input of an iterator, on the threads of the common ForkJoinPool.
+     * The results are returned in the order of the inputs, and only a few of them are held in memory at once
+     * @param inputs customized inputs without initial symbol
+     * @return the stream of the results, one for each input
+     */
+    
+    public Stream<BatchResult> runAll(Iterator<String> inputs) {
+        return runAll(inputs, RunOptions.sequential(), ForkJoinPool.commonPool(), true);
+    }
+    
+    /**
+     * Runs a simulation with customized options for every input of an iterator, on the threads of a ForkJoinPool.
+     * The inputs are consumed lazily and only a few simulations per thread are in flight at once; every thread reuses its tapes, heads and work stack across the inputs.
+     * A simulation which fails with a TuringException yields a result which holds the exception, while any other exception or error is thrown by the stream in place of its result
+     * @param inputs customized inputs without initial symbol
+     * @param options the options of every simulation
+     * @param pool the pool which executes the simulations
+     * @param ordered true if the results must be returned in the order of the inputs, false if they must be returned as they complete
+     * @return the stream of the results, one for each input
+     */
+    
+    public Stream<BatchResult> runAll(Iterator<String> inputs, RunOptions options, ForkJoinPool pool, boolean ordered) {
+        BatchRunner runner = new BatchRunner(this, inputs, options, pool, ordered);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(runner, Spliterator.NONNULL | (ordered ? Spliterator.ORDERED : 0)), false).onClose(runner::close);
+    }
+    
+    /**
+     * Resumes a simulation which has been stopped by a limit of its options, exploring its frontier.
+     * The resumed simulation keeps the outputs and the executed configurations of <i>partial</i>; the limits of <i>options</i> apply only to the resumed part, while its dedup is ignored.
+     * An optimized sequential simulation cannot be resumed in parallel
+     * @param partial the result of the stopped simulation, which must not be resumed again
+     * @param options the options of the resumed simulation
+     * @return the outputs and the statistics of the whole simulation
+     * @throws TuringException
+     */
+    
+    public RunResult resume(RunResult partial, RunOptions options) throws TuringException {
+        List<Branch> frontier = partial.getFrontier();
+        for(Branch b: frontier)
+            if(b.table != table)
+                throw new IllegalArgumentException("The simulation has not been run by this Turing machine");
+        if(partial.getVisitedStore() != null && !partial.getVisitedStore().concurrent && options.isParallel())
+            throw new IllegalArgumentException("An optimized sequential simulation cannot be resumed in parallel");
+        if(partial.getVisitedStore() != null && options.getStrategy().kind == Strategy.ITERATIVE_DEEPENING)
+            throw new IllegalArgumentException("An optimized simulation cannot be resumed by iterative deepening");
+        List<Output> output = new ArrayList<>(partial.getOutputs());
+        Budget budget = new Budget(options, frontier.size());
+        budget.resume(partial.getCycleEntry(), partial.getCycleLength(), partial.halted);
+        return simulate(frontier, options, budget, partial.getVisitedStore(), output, null, partial.getSteps(), null, Checkpoint.of(options, table, output, partial.getSteps(), null));
+    }
+    
+    /**
+     * Resumes a simulation from the last checkpoint it has written (see {@link RunOptions#checkpoint(Path, long, java.util.concurrent.TimeUnit)}), with the default options
+     * @param checkpoint the path of the checkpoint
+     * @return the outputs and the statistics of the whole simulation
+     * @throws IOException
+     * @throws TuringException if the checkpoint is corrupted, or the program has an error
+     */
+    
+    public RunResult resume(Path checkpoint) throws IOException, TuringException {
+        return resume(checkpoint, RunOptions.sequential());
+    }
+    
+    /**
+     * Resumes a simulation from the last checkpoint it has written (see {@link RunOptions#checkpoint(Path, long, java.util.concurrent.TimeUnit)}), even if it has been written by another JVM.
+     * The resumed simulation keeps the outputs, the executed configurations and the number of steps of the checkpointed one, and explores its frontier in the same order: resumed with the same strategy and output detail, it ends with the same outputs and steps of a simulation which has never been stopped.
+     * The limits of <i>options</i> apply only to the resumed part, while its dedup is ignored; if <i>options</i> checkpoint to the same path, the outputs which have already been saved are not written again
+     * @param checkpoint the path of the checkpoint
+     * @param options the options of the resumed simulation
+     * @return the outputs and the statistics of the whole simulation
+     * @throws IOException
+     * @throws TuringException if the checkpoint is corrupted, or the program has an error
+     * @throws IllegalArgumentException if the checkpoint has not been written by a Turing machine with the same program
+     */
+    
+    public RunResult resume(Path checkpoint, RunOptions options) throws IOException, TuringException {
+        Checkpoint.Saved saved = Checkpoint.read(checkpoint, table, blankSymbol, options.isParallel());
+        if(saved.yetExecuted != null && options.getStrategy().kind == Strategy.ITERATIVE_DEEPENING)
+            throw new IllegalArgumentException("An optimized simulation cannot be resumed by iterative deepening");
+        List<Output> output = new ArrayList<>(saved.outputs);
+        Budget budget = new Budget(options, saved.frontier.size());
+        budget.resume(saved.cycleEntry, saved.cycleLength, saved.halted);
+        return simulate(saved.frontier, options, budget, saved.yetExecuted, output, null, saved.steps, null, Checkpoint.of(options, table, output, saved.steps, saved));
+    }
+    
+    private RunResult simulate(List<Branch> branches, RunOptions options, Budget budget, VisitedStore set, List<Output> output, Consumer<? super Output> sink, long steps, Scratch scratch, Checkpoint checkpoint) throws TuringException {
+        Monitor monitor = Monitor.of(options, table, set, budget);
+        List<Branch> frontier = Collections.emptyList();
+        try {
+            if(options.isParallel()) {
+                ParallelExecutor executor = new ParallelExecutor(table, set, budget, monitor, options);
+                output.addAll(executor.run(branches, options.getPool(), sink));
+                frontier = executor.frontier();
+            } else {
+                Executor executor = scratch == null ? new Executor(table, set, null, budget, monitor, options) : new Executor(table, set, null, budget, monitor, options, scratch.stack);
+                executor.push(branches);
+                if(checkpoint != null)
+                    executor.checkpointTo(checkpoint);
+                Output o;
+                while((o=executor.next()) != null) {
+                    if(sink == null)
+                        output.add(o);
+                    else
+                        sink.accept(o);
+                }
+                executor.close();
+                frontier = executor.frontier();
+                if(checkpoint != null)
+                    checkpoint.write(frontier, budget.steps(), budget, set);
+            }
+            return new RunResult(output, budget.status(), budget.cycleEntry(), budget.cycleLength(), budget.halted(), steps + budget.steps(), frontier, set, monitor == null ? null : monitor.finish());
+        } finally {
+            if(monitor != null)
+                monitor.finish();
+            if(set != null && frontier.isEmpty())
+                set.clear();
         }
-        FINAL_STATE retState = null;
-        if(state.equals(FINAL_STATE.YES.toString()))
-            retState = FINAL_STATE.YES;
-        else if(state.equals(FINAL_STATE.NO.toString()))
-            retState = FINAL_STATE.NO;
-        else if(state.equals(FINAL_STATE.HALT.toString()))
-            retState = FINAL_STATE.HALT;
-        if(retState != null) {
-            output.add(new Output(retState, tapes, heads));
-            return;
+    }
+    
+    /**
+     * Checks if at least one branch of the simulation accepts a customized input.
+     * The simulation stops as soon as an accepting branch is found
+     * @param input customized input without initial symbol
+     * @return true if at least one branch reaches the final state YES, false otherwise
+     * @throws TuringException
+     */
+    
+    public boolean accepts(String input) throws TuringException {
+        return accepts(input, RunOptions.sequential());
+    }
+    
+    /**
+     * Checks, with customized options, if at least one branch of the simulation accepts a customized input.
+     * The simulation stops as soon as an accepting branch is found
+     * @param input customized input without initial symbol
+     * @param options the options of the simulation
+     * @return true if at least one branch reaches the final state YES, false otherwise
+     * @throws TuringException
+     */
+    
+    public boolean accepts(String input, RunOptions options) throws TuringException {
+        return find(input, options, (output) -> (output.state == FINAL_STATE.YES)) != null;
+    }
+    
+    /**
+     * Runs a simulation with a customized input and customized options until an output satisfies a predicate.
+     * As soon as such an output is found, the outstanding branches are cancelled
+     * @param input customized input without initial symbol
+     * @param options the options of the simulation
+     * @param predicate the predicate which must be satisfied
+     * @return the first output found which satisfies <i>predicate</i>, or null if there is no such output
+     * @throws TuringException
+     */
+    
+    public Output find(String input, RunOptions options, Predicate<Output> predicate) throws TuringException {
+        List<Branch> branches = Collections.singletonList(new Branch(table, initialConfiguration(input, null), Branch.NONE));
+        VisitedStore set = options.isOptimize() ? options.getDedup().newStore(options.isParallel()) : null;
+        Budget budget = new Budget(options, 1);
+        Monitor monitor = Monitor.of(options, table, set, budget);
+        Executor executor = null;
+        try {
+            if(options.isParallel())
+                return new ParallelExecutor(table, set, budget, monitor, options).find(branches, options.getPool(), predicate);
+            executor = new Executor(table, set, null, budget, monitor, options);
+            executor.push(branches);
+            Output o;
+            while((o=executor.next()) != null)
+                if(predicate.test(o))
+                    return o;
+            return null;
+        } finally {
+            if(executor != null)
+                executor.close();
+            if(monitor != null)
+                monitor.finish();
+            if(set != null)
+                set.clear();
         }
-        Map<String, Map<String, List<String>>> config;
-        Map<String, List<String>> go;
-        if((config=relations.get(state)) == null)
-            throw new TuringException("Cannot find state " + state);
-        char[] curr = new char[tapes.length];
-        String conf = "";
+    }
+    
+    private Configuration initialConfiguration(String input, Scratch scratch) {
+        Tape[] tapes = scratch == null ? new Tape[tapesNumber] : scratch.tapes;
+        int[] heads = scratch == null ? new int[tapesNumber] : scratch.heads;
         for(int i=0; i<tapes.length; i++) {
-            if(tapes[i].length() <= heads[i])
-                tapes[i] += blankSymbol;
-            curr[i] = tapes[i].charAt(heads[i]);
-        }
-        for(char c: curr)
-            conf += c;
-        if((go=config.get(conf)) == null)
-            throw new TuringException("It is not defined what to do from state " + state + " with configuration " + encodeCurrentConfiguration(conf));
-        for(String newState: go.keySet()) {
-            Iterator<String> it = go.get(newState).iterator();
-            while(it.hasNext()) {
-                String newConfig = it.next();
-                String[] newTapes = new String[tapesNumber];
-                System.arraycopy(tapes, 0, newTapes, 0, tapesNumber);
-                int[] newHeads = new int[tapesNumber];
-                System.arraycopy(heads, 0, newHeads, 0, tapesNumber);
-                char[] tmp = newConfig.toCharArray();
-                for(int m=0, j=0; j<tmp.length; j+=2, m++) {
-                    char dir = tmp[j+1];
-                    newTapes[m] = newTapes[m].substring(0,newHeads[m])+tmp[j]+newTapes[m].substring(newHeads[m]+1);
-                    if(dir == rightDirection)
-                        newHeads[m]++;
-                    else if(dir == leftDirection) {
-                        if(newHeads[m] == 0)
-                            throw new TuringException("Cannot go before the universe!");
-                        newHeads[m]--;
-                    } else if(dir != stopDirection)
-                        throw new TuringException("Cannot understand the following direction: " + dir);
-                }
-                run(newTapes, newHeads, newState, output, yetExecuted);
-            }
+            String content = initialSymbol + (i==0 ? input : "");
+            if(tapes[i] == null)
+                tapes[i] = new Tape(blankSymbol, content);
+            else
+                tapes[i].reset(content);
+            heads[i] = 0;
         }
+        return new Configuration(table.initialState, tapes, heads);
     }
     
     /**
@@ -347,7 +634,7 @@ public class Turing {
         * <li>Turing runs methods, if the program has an error</li>
         * </ul>
      */
-    public final class TuringException extends RuntimeException {
+    public static final class TuringException extends RuntimeException {
         public TuringException(String s) {
             super(s);
         }
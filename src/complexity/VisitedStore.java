@@ -0,0 +1,389 @@
+package complexity;
+
+import complexity.datastructure.Bulk;
+import complexity.datastructure.ClockFingerprintCache;
+import complexity.datastructure.FingerprintSet;
+import complexity.datastructure.OffHeapFingerprintSet;
+import complexity.datastructure.Tape;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A VisitedStore remembers the configurations already executed by an optimized simulation.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+abstract class VisitedStore {
+    private static final int EXACT = 0, FINGERPRINTS = 1, BOUNDED = 2, OFF_HEAP = 3;
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+    /**
+     * True if the store can be shared by several threads
+     */
+    final boolean concurrent;
+
+    VisitedStore(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    /**
+     * Adds a configuration to the store, counting a hit if it was already there and a miss otherwise
+     * @param c the configuration
+     * @return true if the configuration had not been executed yet, false otherwise
+     */
+    final boolean visit(Configuration c) {
+        boolean fresh = add(c);
+        (fresh ? misses : hits).increment();
+        return fresh;
+    }
+
+    /**
+     * Adds a configuration to the store
+     * @param c the configuration
+     * @return true if the configuration had not been executed yet, false otherwise
+     */
+    abstract boolean add(Configuration c);
+
+    /**
+     * Gets the number of configurations found in the store
+     * @return the number of hits
+     */
+    final long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of configurations not found in the store
+     * @return the number of misses
+     */
+    final long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of configurations which have been forgotten to make room for new ones
+     * @return the number of evictions
+     */
+    long evictions() {
+        return 0;
+    }
+
+    /**
+     * Checks if the configurations added to the store must keep their fingerprint updated
+     * @return true if the store reads the fingerprint of the configurations, false otherwise
+     */
+    abstract boolean usesFingerprints();
+
+    /**
+     * Releases the memory held by the store
+     */
+    abstract void clear();
+
+    /**
+     * Writes the kind of the store, its parameters, its counters and every configuration it remembers
+     * @param out the output
+     * @throws IOException
+     */
+    final void write(DataOutput out) throws IOException {
+        out.writeLong(hits());
+        out.writeLong(misses());
+        writeContent(out);
+    }
+
+    /**
+     * Writes the kind of the store, its parameters and every configuration it remembers
+     * @param out the output
+     * @throws IOException
+     */
+    abstract void writeContent(DataOutput out) throws IOException;
+
+    /**
+     * Reads a store written by {@link #write(DataOutput)}
+     * @param in the input
+     * @param blankSymbol the blank symbol of the tapes
+     * @param concurrent true if the store will be shared by several threads, false otherwise
+     * @return the store, with the same configurations and counters of the written one
+     * @throws IOException
+     */
+    static VisitedStore read(DataInput in, char blankSymbol, boolean concurrent) throws IOException {
+        long hits = in.readLong(), misses = in.readLong();
+        VisitedStore ret;
+        int kind = in.readByte();
+        switch(kind) {
+            case EXACT:
+                Exact exact = new Exact(concurrent);
+                readConfigurations(in, blankSymbol, exact.set);
+                ret = exact;
+                break;
+            case FINGERPRINTS:
+                Fingerprints fingerprints = new Fingerprints(concurrent, in.readBoolean());
+                for(int k=in.readInt(); k>0; k--)
+                    for(long n=in.readLong(); n>0; n--)
+                        Fingerprints.add(fingerprints.stripes, in.readLong(), in.readLong());
+                if(fingerprints.exact != null) {
+                    for(int k=in.readInt(); k>0; k--)
+                        for(long n=in.readLong(); n>0; n--)
+                            Fingerprints.add(fingerprints.hit, in.readLong(), in.readLong());
+                    readConfigurations(in, blankSymbol, fingerprints.exact);
+                }
+                ret = fingerprints;
+                break;
+            case BOUNDED:
+                ret = new Bounded(concurrent, ClockFingerprintCache.readFrom(in));
+                break;
+            case OFF_HEAP:
+                String directory = in.readUTF();
+                OffHeap offHeap = new OffHeap(concurrent, directory.isEmpty() ? null : Paths.get(directory));
+                for(long n=in.readLong(); n>0; n--)
+                    offHeap.set.add(in.readLong(), in.readLong());
+                ret = offHeap;
+                break;
+            default:
+                throw new IOException("Unknown dedup " + kind);
+        }
+        ret.hits.add(hits);
+        ret.misses.add(misses);
+        return ret;
+    }
+
+    private static void writeConfigurations(DataOutput out, Set<Bulk> set) throws IOException {
+        out.writeInt(set.size());
+        for(Bulk b: set)
+            Checkpoint.writeConfiguration(out, (Integer) b.get(0), (Tape[]) b.get(1), (int[]) b.get(2));
+    }
+
+    private static void readConfigurations(DataInput in, char blankSymbol, Set<Bulk> set) throws IOException {
+        for(int n=in.readInt(); n>0; n--) {
+            int state = in.readInt();
+            Tape[] tapes = Checkpoint.readTapes(in, blankSymbol);
+            set.add(new Bulk(state, tapes, Checkpoint.readHeads(in, tapes.length)));
+        }
+    }
+
+    /**
+     * An Exact store keeps a frozen copy of every configuration.
+     * The frozen tapes share their pages with the running configurations and with each other, so an entry costs only the pages written since the previous one, and two entries are compared skipping the pages they share
+     */
+    static final class Exact extends VisitedStore {
+        private final Set<Bulk> set;
+
+        Exact(boolean concurrent) {
+            super(concurrent);
+            set = concurrent ? ConcurrentHashMap.newKeySet() : new HashSet<>();
+        }
+
+        @Override
+        boolean add(Configuration c) {
+            return set.add(new Bulk(c.state, c.freeze(), c.heads.clone()));
+        }
+
+        @Override
+        void writeContent(DataOutput out) throws IOException {
+            out.writeByte(EXACT);
+            writeConfigurations(out, set);
+        }
+
+        @Override
+        boolean usesFingerprints() {
+            return false;
+        }
+
+        @Override
+        void clear() {
+            set.clear();
+        }
+    }
+
+    /**
+     * A Fingerprints store keeps only the 128-bit fingerprint of every configuration.
+     * Two different configurations are mistaken for the same one with probability about n<sup>2</sup>/2<sup>129</sup> over n configurations.
+     * If the store verifies, it keeps a frozen copy of the configurations which hit a fingerprint, and only of them: the first one which hits a fingerprint is taken for the configuration which added it, and every later hit is resolved against the copies, so two different configurations which both hit the same fingerprint are never mistaken for each other.
+     * A concurrent store is split into stripes, each one guarded by its own lock.
+     */
+    static final class Fingerprints extends VisitedStore {
+        private final FingerprintSet[] stripes;
+        /**
+         * The fingerprints which have been hit, split in the same stripes, if the store verifies
+         */
+        private final FingerprintSet[] hit;
+        private final Set<Bulk> exact;
+
+        Fingerprints(boolean concurrent, boolean verify) {
+            super(concurrent);
+            stripes = newStripes(concurrent ? 64 : 1);
+            hit = verify ? newStripes(stripes.length) : null;
+            exact = !verify ? null : concurrent ? ConcurrentHashMap.newKeySet() : new HashSet<>();
+        }
+
+        private static FingerprintSet[] newStripes(int n) {
+            FingerprintSet[] ret = new FingerprintSet[n];
+            for(int i=0; i<n; i++)
+                ret[i] = new FingerprintSet();
+            return ret;
+        }
+
+        @Override
+        boolean add(Configuration c) {
+            long hi = c.fingerprintHigh(), lo = c.fingerprintLow();
+            if(stripes.length == 1)
+                return add(0, hi, lo, c);
+            int s = (int) (hi >>> 58);
+            synchronized(stripes[s]) {
+                return add(s, hi, lo, c);
+            }
+        }
+
+        /**
+         * Adds the fingerprint of a configuration to its stripe, and resolves a hit against the copies if the store verifies
+         */
+        private boolean add(int s, long hi, long lo, Configuration c) {
+            if(stripes[s].add(hi, lo))
+                return true;
+            if(exact == null)
+                return false;
+            boolean first = hit[s].add(hi, lo);
+            return exact.add(new Bulk(c.state, c.freeze(), c.heads.clone())) && !first;
+        }
+
+        private static void add(FingerprintSet[] stripes, long hi, long lo) {
+            stripes[stripes.length == 1 ? 0 : (int) (hi >>> 58)].add(hi, lo);
+        }
+
+        @Override
+        void writeContent(DataOutput out) throws IOException {
+            out.writeByte(FINGERPRINTS);
+            out.writeBoolean(exact != null);
+            out.writeInt(stripes.length);
+            for(FingerprintSet stripe: stripes)
+                stripe.writeTo(out);
+            if(exact != null) {
+                out.writeInt(hit.length);
+                for(FingerprintSet stripe: hit)
+                    stripe.writeTo(out);
+                writeConfigurations(out, exact);
+            }
+        }
+
+        @Override
+        boolean usesFingerprints() {
+            return true;
+        }
+
+        @Override
+        void clear() {
+            for(FingerprintSet stripe: stripes)
+                stripe.clear();
+            if(exact != null) {
+                for(FingerprintSet stripe: hit)
+                    stripe.clear();
+                exact.clear();
+            }
+        }
+    }
+
+    /**
+     * A Bounded store keeps at most a fixed number of fingerprints, evicting the least recently hit ones with the CLOCK policy.
+     * An evicted configuration is executed again if it is reached again.
+     */
+    static final class Bounded extends VisitedStore {
+        private final ClockFingerprintCache cache;
+
+        Bounded(boolean concurrent, int capacity) {
+            this(concurrent, new ClockFingerprintCache(capacity));
+        }
+
+        private Bounded(boolean concurrent, ClockFingerprintCache cache) {
+            super(concurrent);
+            this.cache = cache;
+        }
+
+        @Override
+        boolean add(Configuration c) {
+            if(!concurrent)
+                return cache.add(c.fingerprintHigh(), c.fingerprintLow());
+            synchronized(cache) {
+                return cache.add(c.fingerprintHigh(), c.fingerprintLow());
+            }
+        }
+
+        @Override
+        long evictions() {
+            if(!concurrent)
+                return cache.evictions();
+            synchronized(cache) {
+                return cache.evictions();
+            }
+        }
+
+        @Override
+        void writeContent(DataOutput out) throws IOException {
+            out.writeByte(BOUNDED);
+            cache.writeTo(out);
+        }
+
+        @Override
+        boolean usesFingerprints() {
+            return true;
+        }
+
+        @Override
+        void clear() {
+            if(!concurrent) {
+                cache.clear();
+                return;
+            }
+            synchronized(cache) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * An OffHeap store keeps the fingerprints outside the Java heap, in direct memory or in memory-mapped files
+     */
+    static final class OffHeap extends VisitedStore {
+        private final OffHeapFingerprintSet set;
+        private final Path directory;
+
+        OffHeap(boolean concurrent, Path directory) {
+            super(concurrent);
+            this.set = new OffHeapFingerprintSet(directory);
+            this.directory = directory;
+        }
+
+        @Override
+        boolean add(Configuration c) {
+            if(!concurrent)
+                return set.add(c.fingerprintHigh(), c.fingerprintLow());
+            synchronized(set) {
+                return set.add(c.fingerprintHigh(), c.fingerprintLow());
+            }
+        }
+
+        @Override
+        void writeContent(DataOutput out) throws IOException {
+            out.writeByte(OFF_HEAP);
+            out.writeUTF(directory == null ? "" : directory.toString());
+            set.writeTo(out);
+        }
+
+        @Override
+        boolean usesFingerprints() {
+            return true;
+        }
+
+        @Override
+        void clear() {
+            set.close();
+        }
+    }
+}
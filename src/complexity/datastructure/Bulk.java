@@ -56,9 +56,9 @@ public class Bulk implements Iterable<Object> {
             return 0;
         if(!x.getClass().isArray())
             return x.hashCode();
-        int h = 0;
+        int h = 1;
         for(int i=0; i<Array.getLength(x); i++)
-            h ^= recursiveHashCode(Array.get(x,i));
+            h = 31*h + recursiveHashCode(Array.get(x,i));
         return h;
     }
 
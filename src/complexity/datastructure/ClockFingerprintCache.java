@@ -0,0 +1,161 @@
+package complexity.datastructure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A ClockFingerprintCache is a set of 128-bit fingerprints with a fixed capacity.
+ * The cache is set-associative: every fingerprint can only live in one of the ways of its set, and when a set is full the CLOCK policy evicts a fingerprint which has not been looked up since the hand last passed over it.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public class ClockFingerprintCache {
+    private static final int WAYS = 8;
+    private final long[] high;
+    private final long[] low;
+    private final boolean[] used;
+    private final boolean[] referenced;
+    private final byte[] hands;
+    private final int setMask;
+    private int size;
+    private long evictions;
+
+    /**
+     * Creates a new empty cache
+     * @param capacity the maximum number of fingerprints, rounded up to a power of two of at least 8
+     */
+    public ClockFingerprintCache(int capacity) {
+        int sets = 1;
+        while(sets*WAYS < capacity)
+            sets <<= 1;
+        high = new long[sets*WAYS];
+        low = new long[sets*WAYS];
+        used = new boolean[sets*WAYS];
+        referenced = new boolean[sets*WAYS];
+        hands = new byte[sets];
+        setMask = sets-1;
+    }
+
+    /**
+     * Adds a fingerprint to the cache, possibly evicting another one
+     * @param hi the 64 most significant bits of the fingerprint
+     * @param lo the 64 least significant bits of the fingerprint
+     * @return true if the cache did not contain the fingerprint, false otherwise
+     */
+    public boolean add(long hi, long lo) {
+        int set = (int) (lo ^ (lo >>> 32)) & setMask;
+        int base = set*WAYS, free = -1;
+        for(int i=base; i<base+WAYS; i++) {
+            if(!used[i])
+                free = free == -1 ? i : free;
+            else if(high[i] == hi && low[i] == lo) {
+                referenced[i] = true;
+                return false;
+            }
+        }
+        if(free == -1) {
+            int hand = hands[set];
+            while(referenced[base+hand]) {
+                referenced[base+hand] = false;
+                hand = (hand+1) % WAYS;
+            }
+            free = base+hand;
+            hands[set] = (byte) ((hand+1) % WAYS);
+            evictions++;
+            size--;
+        }
+        high[free] = hi;
+        low[free] = lo;
+        used[free] = true;
+        referenced[free] = false;
+        size++;
+        return true;
+    }
+
+    /**
+     * Gets the number of fingerprints in the cache
+     * @return the number of fingerprints in the cache
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the maximum number of fingerprints of the cache
+     * @return the capacity of the cache
+     */
+    public int capacity() {
+        return high.length;
+    }
+
+    /**
+     * Gets the number of fingerprints evicted so far
+     * @return the number of evictions
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Removes all the fingerprints from the cache and puts every hand back on the first way of its set.
+     * The capacity and the number of evictions are kept
+     */
+    public void clear() {
+        Arrays.fill(high, 0);
+        Arrays.fill(low, 0);
+        Arrays.fill(used, false);
+        Arrays.fill(referenced, false);
+        Arrays.fill(hands, (byte) 0);
+        size = 0;
+    }
+
+    /**
+     * Writes the whole cache, with the positions of the hands and the reference bits, so that it can be read back exactly as it is
+     * @param out the output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(high.length);
+        out.writeInt(size);
+        out.writeLong(evictions);
+        out.write(hands);
+        for(int i=0; i<high.length; i++) {
+            out.writeByte((used[i] ? 1 : 0) | (referenced[i] ? 2 : 0));
+            if(used[i]) {
+                out.writeLong(high[i]);
+                out.writeLong(low[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a cache written by {@link #writeTo(DataOutput)}
+     * @param in the input
+     * @return the cache
+     * @throws IOException
+     */
+    public static ClockFingerprintCache readFrom(DataInput in) throws IOException {
+        int capacity = in.readInt();
+        if(capacity < WAYS || Integer.bitCount(capacity) != 1)
+            throw new IOException("Invalid capacity " + capacity);
+        ClockFingerprintCache ret = new ClockFingerprintCache(capacity);
+        ret.size = in.readInt();
+        ret.evictions = in.readLong();
+        in.readFully(ret.hands);
+        for(int i=0; i<capacity; i++) {
+            int flags = in.readByte();
+            ret.used[i] = (flags & 1) != 0;
+            ret.referenced[i] = (flags & 2) != 0;
+            if(ret.used[i]) {
+                ret.high[i] = in.readLong();
+                ret.low[i] = in.readLong();
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,141 @@
+package complexity.datastructure;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A FingerprintSet is a set of 128-bit fingerprints, each one given as a pair of longs.
+ * Fingerprints are stored in primitive arrays with open addressing and linear probing, so a set of n fingerprints takes about 32n bytes and no object per element.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public class FingerprintSet {
+    private static final int MIN_CAPACITY = 16;
+    private long[] high;
+    private long[] low;
+    private int size;
+    private boolean containsZero;
+
+    /**
+     * Creates a new empty set
+     */
+    public FingerprintSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates a new empty set which can hold <i>expected</i> fingerprints without being resized
+     * @param expected expected number of fingerprints
+     */
+    public FingerprintSet(int expected) {
+        int capacity = MIN_CAPACITY;
+        while(capacity < expected*2)
+            capacity <<= 1;
+        high = new long[capacity];
+        low = new long[capacity];
+    }
+
+    /**
+     * Adds a fingerprint to the set
+     * @param hi the 64 most significant bits of the fingerprint
+     * @param lo the 64 least significant bits of the fingerprint
+     * @return true if the set did not already contain the fingerprint, false otherwise
+     */
+    public boolean add(long hi, long lo) {
+        if(hi == 0 && lo == 0) {
+            if(containsZero)
+                return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = high.length-1;
+        int i = (int) (lo ^ (lo >>> 32)) & mask;
+        while(high[i] != 0 || low[i] != 0) {
+            if(high[i] == hi && low[i] == lo)
+                return false;
+            i = (i+1) & mask;
+        }
+        high[i] = hi;
+        low[i] = lo;
+        if(++size*2 > high.length)
+            resize();
+        return true;
+    }
+
+    /**
+     * Checks if the set contains a fingerprint
+     * @param hi the 64 most significant bits of the fingerprint
+     * @param lo the 64 least significant bits of the fingerprint
+     * @return true if the set contains the fingerprint, false otherwise
+     */
+    public boolean contains(long hi, long lo) {
+        if(hi == 0 && lo == 0)
+            return containsZero;
+        int mask = high.length-1;
+        int i = (int) (lo ^ (lo >>> 32)) & mask;
+        while(high[i] != 0 || low[i] != 0) {
+            if(high[i] == hi && low[i] == lo)
+                return true;
+            i = (i+1) & mask;
+        }
+        return false;
+    }
+
+    private void resize() {
+        long[] oldHigh = high, oldLow = low;
+        high = new long[oldHigh.length*2];
+        low = new long[oldLow.length*2];
+        int mask = high.length-1;
+        for(int j=0; j<oldHigh.length; j++) {
+            long hi = oldHigh[j], lo = oldLow[j];
+            if(hi == 0 && lo == 0)
+                continue;
+            int i = (int) (lo ^ (lo >>> 32)) & mask;
+            while(high[i] != 0 || low[i] != 0)
+                i = (i+1) & mask;
+            high[i] = hi;
+            low[i] = lo;
+        }
+    }
+
+    /**
+     * Gets the number of fingerprints in the set
+     * @return the number of fingerprints in the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the number of fingerprints in the set, as a long, followed by every fingerprint, as two longs; the fingerprints can be read back and added one at a time
+     * @param out the output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(size);
+        if(containsZero) {
+            out.writeLong(0);
+            out.writeLong(0);
+        }
+        for(int i=0; i<high.length; i++) {
+            if(high[i] != 0 || low[i] != 0) {
+                out.writeLong(high[i]);
+                out.writeLong(low[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes all the fingerprints from the set
+     */
+    public void clear() {
+        high = new long[MIN_CAPACITY];
+        low = new long[MIN_CAPACITY];
+        size = 0;
+        containsZero = false;
+    }
+}
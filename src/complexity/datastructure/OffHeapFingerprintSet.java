@@ -0,0 +1,197 @@
+package complexity.datastructure;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An OffHeapFingerprintSet is a set of 128-bit fingerprints which lives outside the Java heap.
+ * Fingerprints are stored with open addressing and linear probing in direct buffers or in memory-mapped files, split in segments of at most 2<sup>26</sup> slots, so the set can grow to many gigabytes without burdening the garbage collector.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public class OffHeapFingerprintSet {
+    private static final int SLOT_BYTES = 16;
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long MIN_CAPACITY = 1 << 10;
+    private final Path directory;
+    private ByteBuffer[] segments;
+    private Path[] files;
+    private long capacity;
+    private long size;
+    private boolean containsZero;
+
+    /**
+     * Creates a new empty set in direct memory
+     */
+    public OffHeapFingerprintSet() {
+        this(null);
+    }
+
+    /**
+     * Creates a new empty set in memory-mapped files
+     * @param directory the directory where the files are created, or null to use direct memory
+     */
+    public OffHeapFingerprintSet(Path directory) {
+        this.directory = directory;
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(long newCapacity) {
+        int segmentSlots = (int) Long.min(newCapacity, 1L << SEGMENT_SHIFT);
+        int n = (int) (newCapacity / segmentSlots);
+        ByteBuffer[] newSegments = new ByteBuffer[n];
+        Path[] newFiles = directory == null ? null : new Path[n];
+        try {
+            for(int i=0; i<n; i++) {
+                if(directory == null)
+                    newSegments[i] = ByteBuffer.allocateDirect(segmentSlots*SLOT_BYTES);
+                else {
+                    newFiles[i] = Files.createTempFile(directory, "visited", ".bin");
+                    try (FileChannel channel = FileChannel.open(newFiles[i], StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                        newSegments[i] = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentSlots*SLOT_BYTES);
+                    }
+                }
+            }
+        } catch(IOException e) {
+            delete(newFiles);
+            throw new UncheckedIOException(e);
+        }
+        segments = newSegments;
+        files = newFiles;
+        capacity = newCapacity;
+    }
+
+    private long high(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) (slot & ((1L << SEGMENT_SHIFT)-1))*SLOT_BYTES);
+    }
+
+    private long low(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) (slot & ((1L << SEGMENT_SHIFT)-1))*SLOT_BYTES + 8);
+    }
+
+    private void put(long slot, long hi, long lo) {
+        ByteBuffer b = segments[(int) (slot >>> SEGMENT_SHIFT)];
+        int offset = (int) (slot & ((1L << SEGMENT_SHIFT)-1))*SLOT_BYTES;
+        b.putLong(offset, hi);
+        b.putLong(offset+8, lo);
+    }
+
+    /**
+     * Adds a fingerprint to the set
+     * @param hi the 64 most significant bits of the fingerprint
+     * @param lo the 64 least significant bits of the fingerprint
+     * @return true if the set did not already contain the fingerprint, false otherwise
+     */
+    public boolean add(long hi, long lo) {
+        if(hi == 0 && lo == 0) {
+            if(containsZero)
+                return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        long mask = capacity-1;
+        long slot = (lo ^ (lo >>> 29)) & mask, h, l;
+        while((h=high(slot)) != 0 | (l=low(slot)) != 0) {
+            if(h == hi && l == lo)
+                return false;
+            slot = (slot+1) & mask;
+        }
+        put(slot, hi, lo);
+        if(++size*4 > capacity*3)
+            resize();
+        return true;
+    }
+
+    private void resize() {
+        ByteBuffer[] oldSegments = segments;
+        Path[] oldFiles = files;
+        long oldCapacity = capacity;
+        allocate(capacity*2);
+        long mask = capacity-1;
+        for(int s=0; s<oldSegments.length; s++) {
+            ByteBuffer b = oldSegments[s];
+            long slots = oldCapacity / oldSegments.length;
+            for(int j=0; j<slots; j++) {
+                long hi = b.getLong(j*SLOT_BYTES), lo = b.getLong(j*SLOT_BYTES+8);
+                if(hi == 0 && lo == 0)
+                    continue;
+                long slot = (lo ^ (lo >>> 29)) & mask;
+                while(high(slot) != 0 || low(slot) != 0)
+                    slot = (slot+1) & mask;
+                put(slot, hi, lo);
+            }
+        }
+        delete(oldFiles);
+    }
+
+    private static void delete(Path[] files) {
+        if(files == null)
+            return;
+        for(Path f: files) {
+            if(f == null)
+                continue;
+            try {
+                Files.deleteIfExists(f);
+            } catch(IOException e) {
+                f.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of fingerprints in the set
+     * @return the number of fingerprints in the set
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Writes the number of fingerprints in the set, as a long, followed by every fingerprint, as two longs; the fingerprints can be read back and added one at a time
+     * @param out the output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(size);
+        if(containsZero) {
+            out.writeLong(0);
+            out.writeLong(0);
+        }
+        for(long slot=0; slot<capacity; slot++) {
+            long hi = high(slot), lo = low(slot);
+            if(hi != 0 || lo != 0) {
+                out.writeLong(hi);
+                out.writeLong(lo);
+            }
+        }
+    }
+
+    /**
+     * Removes all the fingerprints from the set and deletes its files
+     */
+    public void clear() {
+        delete(files);
+        size = 0;
+        containsZero = false;
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Deletes the files of the set, which must not be used anymore
+     */
+    public void close() {
+        delete(files);
+        segments = null;
+        files = null;
+    }
+}
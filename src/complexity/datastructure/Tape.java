@@ -0,0 +1,467 @@
+package complexity.datastructure;
+
+import java.util.Arrays;
+
+/**
+ * A Tape is a mutable sequence of symbols which grows on demand.
+ * A tape which fits in a page is a single char array whose capacity grows geometrically; a longer tape is a tree of fixed-size pages, and pages which have never been written are not allocated and read as blank symbols.
+ * <p>
+ * Tapes created by {@link #share()} share all their pages in O(1) time. Every tape holds an ownership token and an epoch, and it writes in place only the pages and the nodes which carry both;
+ * the first write on a shared page copies the page and the path from the root to it, so a write costs O(log n + page size) and sibling tapes which differ in a single cell share all the other pages.
+ * Pages which are not owned by a tape never change, so two tapes are compared page by page, skipping the pages which are the same object.
+ *
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ * @version 1.2
+ */
+
+public class Tape {
+    private static final int PAGE_BITS = 6, PAGE = 1 << PAGE_BITS, FANOUT_BITS = 5, FANOUT = 1 << FANOUT_BITS, MIN_CAPACITY = 16;
+    private final char blankSymbol;
+    /**
+     * The root of the tree of pages, or null if the whole tape is the current page
+     */
+    private Node root;
+    /**
+     * Number of index bits below the children of the root
+     */
+    private int shift;
+    private int length;
+    /**
+     * The token and the epoch of the nodes which this tape can change in place: sharing the tape starts a new epoch, and a new token is taken only when the epochs wrap around
+     */
+    private Object owner;
+    private int epoch;
+    /**
+     * The page which has been reached last, the index of its first cell and whether this tape can change it in place
+     */
+    private char[] page;
+    private int pageBase;
+    private boolean pageOwned;
+
+    /**
+     * Creates a new tape with the given initial content
+     * @param blankSymbol the symbol read on cells which have never been reached
+     * @param content the initial content of the tape
+     */
+    public Tape(char blankSymbol, CharSequence content) {
+        this.blankSymbol = blankSymbol;
+        this.owner = this;
+        reset(content);
+    }
+
+    /**
+     * Replaces the whole content of the tape, reusing its memory if it is a single page which is not shared
+     * @param content the new content of the tape
+     */
+    public void reset(CharSequence content) {
+        int oldLength = length;
+        length = content.length();
+        if(length <= PAGE) {
+            if(root != null || !pageOwned || page.length < length) {
+                page = new char[Integer.max(MIN_CAPACITY, length)];
+                Arrays.fill(page, length, page.length, blankSymbol);
+            } else if(length < oldLength)
+                Arrays.fill(page, length, oldLength, blankSymbol);
+            for(int i=0; i<length; i++)
+                page[i] = content.charAt(i);
+            root = null;
+            pageBase = 0;
+            pageOwned = true;
+            return;
+        }
+        shift = PAGE_BITS;
+        while(capacity(shift) < length)
+            shift += FANOUT_BITS;
+        root = new Node(this, false);
+        page = null;
+        pageBase = -1;
+        for(int from=0; from<length; from+=PAGE) {
+            char[] cells = leaf(from);
+            for(int i=from; i<length && i<from+PAGE; i++)
+                cells[i-from] = content.charAt(i);
+        }
+    }
+
+    private Tape(Tape tape) {
+        this.blankSymbol = tape.blankSymbol;
+        this.root = tape.root;
+        this.shift = tape.shift;
+        this.length = tape.length;
+        this.owner = this;
+        this.page = tape.page;
+        this.pageBase = tape.pageBase;
+    }
+
+    /**
+     * Reads the symbol of the i-th cell, extending the tape with blank symbols if the cell has never been reached
+     * @param i index of the cell
+     * @return the symbol of the i-th cell
+     */
+    public char read(int i) {
+        if(i < length && (i & -PAGE) == pageBase)
+            return page[i & (PAGE-1)];
+        return readPage(i);
+    }
+
+    private char readPage(int i) {
+        if(i < 0)
+            throw new ArrayIndexOutOfBoundsException(i);
+        if(i >= length)
+            extend(i+1);
+        if((i & -PAGE) == pageBase)
+            return page[i & (PAGE-1)];
+        Node n = root;
+        for(int s=shift; n != null && s >= PAGE_BITS; s-=FANOUT_BITS)
+            n = n.children[(i >>> s) & (FANOUT-1)];
+        if(n == null)
+            return blankSymbol;
+        page = n.cells;
+        pageBase = i & -PAGE;
+        pageOwned = owns(n);
+        return page[i & (PAGE-1)];
+    }
+
+    /**
+     * Writes a symbol on the i-th cell, extending the tape with blank symbols if the cell has never been reached
+     * @param i index of the cell
+     * @param c symbol to be written
+     */
+    public void write(int i, char c) {
+        if(i < length && pageOwned && (i & -PAGE) == pageBase)
+            page[i & (PAGE-1)] = c;
+        else if(read(i) != c) {
+            if(root == null) {
+                if(!pageOwned)
+                    page = page.clone();
+            } else if((i & -PAGE) != pageBase || !pageOwned) {
+                page = leaf(i);
+                pageBase = i & -PAGE;
+            }
+            pageOwned = true;
+            page[i & (PAGE-1)] = c;
+        }
+    }
+
+    /**
+     * Counts the consecutive cells which hold a symbol, without extending the tape: the cells which have never been reached hold the blank symbol.
+     * Pages are scanned as arrays, and the pages which have never been written are skipped as a whole
+     * @param from index of the first cell
+     * @param step 1 to count towards the end of the tape, -1 to count towards its beginning
+     * @param c the symbol
+     * @param max the maximum number of cells counted
+     * @return the number of consecutive cells from <i>from</i> which hold <i>c</i>, at most <i>max</i>
+     */
+    public int run(int from, int step, char c, int max) {
+        int count = 0, i = from;
+        while(count < max && i >= 0) {
+            if(i >= length) {
+                if(c != blankSymbol)
+                    return count;
+                if(step > 0)
+                    return max;
+                int n = Integer.min(max-count, i-length+1);
+                count += n;
+                i -= n;
+                continue;
+            }
+            int base = i & -PAGE, end = step > 0 ? Integer.min(base+PAGE, length) : base-1;
+            char[] cells = cells(i);
+            if(cells == null) {
+                if(c != blankSymbol)
+                    return count;
+                int n = Integer.min(max-count, step > 0 ? end-i : i-end);
+                count += n;
+                i += step*n;
+                continue;
+            }
+            while(i != end && count < max && cells[i & (PAGE-1)] == c) {
+                i += step;
+                count++;
+            }
+            if(i != end)
+                return count;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the page of the i-th cell for reading, without changing the current page
+     * @return the cells of the page, or null if the page has never been written
+     */
+    private char[] cells(int i) {
+        if((i & -PAGE) == pageBase)
+            return page;
+        Node n = root;
+        for(int s=shift; n != null && s >= PAGE_BITS; s-=FANOUT_BITS)
+            n = n.children[(i >>> s) & (FANOUT-1)];
+        return n == null ? null : n.cells;
+    }
+
+    /**
+     * Extends the tape with blank symbols.
+     * A single page grows up to the size of a page, then it becomes the first page of a tree, and levels are added on top of the tree whenever it is full
+     */
+    private void extend(int newLength) {
+        if(root == null) {
+            if(newLength > page.length) {
+                int capacity = page.length;
+                page = Arrays.copyOf(page, Integer.min(PAGE, Integer.max(newLength, capacity + (capacity >> 1))));
+                Arrays.fill(page, capacity, page.length, blankSymbol);
+                pageOwned = true;
+            }
+            if(newLength <= PAGE) {
+                length = newLength;
+                return;
+            }
+            root = new Node(this, false);
+            root.children[0] = new Node(this, page);
+            shift = PAGE_BITS;
+        }
+        while(capacity(shift) < newLength) {
+            Node n = new Node(this, false);
+            n.children[0] = root;
+            root = n;
+            shift += FANOUT_BITS;
+        }
+        length = newLength;
+    }
+
+    private boolean owns(Node n) {
+        return n.owner == owner && n.epoch == epoch;
+    }
+
+    private static long capacity(int shift) {
+        return 1L << (shift + FANOUT_BITS);
+    }
+
+    /**
+     * Gets the page of the i-th cell for writing: the nodes on the path which are not owned by this tape are copied, and the missing ones are created
+     */
+    private char[] leaf(int i) {
+        if(!owns(root))
+            root = root.copy(this);
+        Node n = root;
+        for(int s=shift; s >= PAGE_BITS; s-=FANOUT_BITS) {
+            int k = (i >>> s) & (FANOUT-1);
+            Node child = n.children[k];
+            if(child == null) {
+                child = new Node(this, s == PAGE_BITS);
+                if(child.cells != null)
+                    Arrays.fill(child.cells, blankSymbol);
+                n.children[k] = child;
+            } else if(!owns(child))
+                n.children[k] = child = child.copy(this);
+            n = child;
+        }
+        return n.cells;
+    }
+
+    /**
+     * Gets the number of cells which have been reached so far
+     * @return the length of the tape
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Creates an independent copy of this tape
+     * @return a copy of this tape
+     */
+    public Tape copy() {
+        return share();
+    }
+
+    /**
+     * Creates a copy of this tape in O(1) time, which shares the pages with this tape until either of them changes a cell.
+     * From now on, neither tape owns the pages which exist now
+     * @return a copy of this tape
+     */
+    public Tape share() {
+        if(++epoch == 0)
+            owner = new Object();
+        pageOwned = false;
+        return new Tape(this);
+    }
+
+    /**
+     * Checks if another tape has the same length and the same content of this tape.
+     * Pages shared by the two tapes are not compared
+     * @param x the object to be compared
+     * @return true if x is a tape with the same content, false otherwise
+     */
+    @Override
+    public boolean equals(Object x) {
+        if(this == x)
+            return true;
+        if(!(x instanceof Tape))
+            return false;
+        Tape t = (Tape) x;
+        if(length != t.length)
+            return false;
+        if(root == null || t.root == null)
+            return root == t.root && sameCells(page, t.page);
+        return shift == t.shift && equals(root, t.root, shift, t);
+    }
+
+    private boolean equals(Node a, Node b, int s, Tape t) {
+        if(a == b)
+            return true;
+        if(a == null || b == null)
+            return blank(a == null ? b : a, s);
+        int ha = owns(a) ? 0 : a.hash, hb = t.owns(b) ? 0 : b.hash;
+        if(ha != 0 && hb != 0 && ha != hb)
+            return false;
+        if(s < PAGE_BITS)
+            return sameCells(a.cells, b.cells);
+        for(int k=0; k<FANOUT; k++)
+            if(!equals(a.children[k], b.children[k], s-FANOUT_BITS, t))
+                return false;
+        return true;
+    }
+
+    /**
+     * Compares two pages, which are the same if the cells beyond the end of the shorter one are blank
+     */
+    private boolean sameCells(char[] a, char[] b) {
+        if(a == b)
+            return true;
+        int n = Integer.min(a.length, b.length);
+        for(int i=0; i<n; i++)
+            if(a[i] != b[i])
+                return false;
+        char[] longer = a.length > n ? a : b;
+        for(int i=n; i<longer.length; i++)
+            if(longer[i] != blankSymbol)
+                return false;
+        return true;
+    }
+
+    private boolean blank(Node n, int s) {
+        if(n == null)
+            return true;
+        if(s < PAGE_BITS) {
+            for(char c: n.cells)
+                if(c != blankSymbol)
+                    return false;
+            return true;
+        }
+        for(Node child: n.children)
+            if(!blank(child, s-FANOUT_BITS))
+                return false;
+        return true;
+    }
+
+    /**
+     * Computes a hash code of the content of this tape.
+     * The hash code of a node which this tape does not own is computed once and kept in the node
+     * @return the hash code of the tape
+     */
+    @Override
+    public int hashCode() {
+        return 31*length + (root == null ? hash(page) : hash(root, shift));
+    }
+
+    private int hash(Node n, int s) {
+        if(n == null)
+            return blankHash(s);
+        if(n.hash != 0 && !owns(n))
+            return n.hash;
+        int h;
+        if(s < PAGE_BITS)
+            h = hash(n.cells);
+        else {
+            h = 1;
+            for(Node child: n.children)
+                h = 31*h + hash(child, s-FANOUT_BITS);
+        }
+        if(!owns(n))
+            n.hash = h;
+        return h;
+    }
+
+    /**
+     * Computes the hash code of a page: trailing blank symbols are not hashed, so a page has the same hash code whatever its capacity, and the hash code of a blank page is 1
+     */
+    private int hash(char[] cells) {
+        int end = cells.length;
+        while(end > 0 && cells[end-1] == blankSymbol)
+            end--;
+        int h = 1;
+        for(int i=0; i<end; i++)
+            h = 31*h + cells[i];
+        return h;
+    }
+
+    private static int blankHash(int s) {
+        int h = 1;
+        for(int level=PAGE_BITS; level<=s; level+=FANOUT_BITS) {
+            int child = h;
+            h = 1;
+            for(int k=0; k<FANOUT; k++)
+                h = 31*h + child;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        if(root == null)
+            return new String(page, 0, length);
+        char[] ret = new char[length];
+        Arrays.fill(ret, blankSymbol);
+        toString(root, shift, 0, ret);
+        return new String(ret);
+    }
+
+    private void toString(Node n, int s, long base, char[] ret) {
+        if(n == null || base >= ret.length)
+            return;
+        if(s < PAGE_BITS) {
+            System.arraycopy(n.cells, 0, ret, (int) base, (int) Long.min(PAGE, ret.length-base));
+            return;
+        }
+        for(int k=0; k<FANOUT; k++)
+            toString(n.children[k], s-FANOUT_BITS, base + ((long) k << s), ret);
+    }
+
+    /**
+     * A Node is either a page of the tree or an inner node
+     */
+    private static final class Node {
+        final Object owner;
+        final int epoch;
+        final Node[] children;
+        final char[] cells;
+        /**
+         * The hash code of the content of the node, or 0 if it has not been computed; it is computed only when the node can no longer change
+         */
+        int hash;
+
+        Node(Tape tape, boolean leaf) {
+            this.owner = tape.owner;
+            this.epoch = tape.epoch;
+            this.children = leaf ? null : new Node[FANOUT];
+            this.cells = leaf ? new char[PAGE] : null;
+        }
+
+        Node(Tape tape, char[] cells) {
+            this.owner = tape.owner;
+            this.epoch = tape.epoch;
+            this.children = null;
+            this.cells = cells;
+        }
+
+        private Node(Tape tape, Node n) {
+            this.owner = tape.owner;
+            this.epoch = tape.epoch;
+            this.children = n.children == null ? null : n.children.clone();
+            this.cells = n.cells == null ? null : n.cells.clone();
+        }
+
+        Node copy(Tape tape) {
+            return new Node(tape, this);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package test.benchmark;
+
+import complexity.RunOptions;
+import complexity.Turing;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A micro-benchmark harness for the Turing machine simulator.
+ * It measures the parsing cost of the programs, the steps per second of long deterministic machines, with and without acceleration and compilation, optimized and complete simulations of branching machines and the memory allocated per operation.
+ * Every benchmark is run for some warmup iterations, whose results are discarded, and then for some measured iterations; the score is the mean of the measured iterations with its 99.9% confidence interval.
+ * <p>
+ * Usage: <code>java test.benchmark.Benchmark [filter] [warmups] [iterations]</code>, where <i>filter</i> selects the benchmarks whose name contains it.
+ * 
+ * @author Mirko Alicastro
+ * @link https://github.com/mirkoalicastro/turing
+ */
+
+public class Benchmark {
+
+    /**
+     * An operation to be measured
+     */
+    private interface Operation {
+        /**
+         * Executes the operation once
+         * @return the number of units of work done (e.g. steps), used to compute the throughput
+         * @throws Exception
+         */
+        long run() throws Exception;
+    }
+
+    private static final String PALINDROME = "src//complexity//input.txt";
+    private static final long MIN_ITERATION_NANOS = 200_000_000L;
+    private static String filter = "";
+    private static int warmups = 3, iterations = 5;
+    private static final List<Path> generated = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        if(args.length > 0)
+            filter = args[0];
+        if(args.length > 1)
+            warmups = Integer.parseInt(args[1]);
+        if(args.length > 2)
+            iterations = Integer.parseInt(args[2]);
+        System.out.printf("%-40s %-24s %6s %14s %12s %-10s %14s%n", "Benchmark", "(params)", "Cnt", "Score", "Error", "Units", "alloc B/op");
+        try {
+            parse();
+            deterministic();
+            branching();
+            families();
+        } finally {
+            for(Path p: generated)
+                Files.deleteIfExists(p);
+        }
+    }
+
+    private static void parse() throws Exception {
+        for(int rules: new int[]{1_000, 10_000, 100_000}) {
+            String file = write(counterFamily(rules));
+            measure("parse", "rules=" + rules, "ops/s", () -> {
+                new Turing(file);
+                return 1;
+            });
+        }
+        measure("parse", "palindrome", "ops/s", () -> {
+            new Turing(PALINDROME);
+            return 1;
+        });
+    }
+
+    private static void deterministic() throws Exception {
+        Turing counter = new Turing(write(binaryCounter()));
+        for(int n: new int[]{10_000, 100_000}) {
+            String input = repeat('1', n);
+            for(boolean compile: new boolean[]{false, true})
+                measure("deterministic.binaryCounter", "n=" + n + ",compile=" + compile, "steps/s", () -> counter.simulate(input, RunOptions.sequential().compile(compile)).getSteps());
+        }
+        Turing sweeper = new Turing(write(sweeper()));
+        for(int n: new int[]{1_000, 3_000}) {
+            String input = repeat('1', n);
+            for(boolean accelerate: new boolean[]{false, true})
+                measure("deterministic.sweeper", "n=" + n + ",accelerate=" + accelerate, "steps/s", () -> sweeper.simulate(input, RunOptions.sequential().accelerate(accelerate)).getSteps());
+            measure("deterministic.sweeper", "n=" + n + ",compile=true", "steps/s", () -> sweeper.simulate(input, RunOptions.sequential().compile(true)).getSteps());
+        }
+    }
+
+    private static void branching() throws Exception {
+        Turing palindrome = new Turing(PALINDROME);
+        for(int n: new int[]{8, 12, 16}) {
+            String input = repeat('1', n/2) + repeat('0', n-n/2);
+            for(boolean optimize: new boolean[]{false, true})
+                measure("branching.palindrome", "n=" + n + ",optimize=" + optimize, "steps/s", () -> palindrome.simulate(input, RunOptions.sequential().optimize(optimize)).getSteps());
+        }
+    }
+
+    private static void families() throws Exception {
+        for(int tapes: new int[]{1, 2, 4}) {
+            for(int branching: new int[]{2, 3}) {
+                Turing guess = new Turing(write(guessFamily(tapes, branching)));
+                int n = (int) (Math.log(20_000) / Math.log(branching));
+                String input = repeat('1', n);
+                measure("family.guess", "tapes=" + tapes + ",b=" + branching, "steps/s", () -> guess.simulate(input, RunOptions.sequential()).getSteps());
+            }
+        }
+        Turing fork = new Turing(write(forkFamily(8, 3)));
+        for(int length: new int[]{100, 10_000, 100_000}) {
+            String input = repeat('1', length);
+            measure("family.fork", "length=" + length, "steps/s", () -> fork.simulate(input, RunOptions.sequential().outputDetail(RunOptions.Detail.STATE)).getSteps());
+        }
+    }
+
+    private static void measure(String name, String params, String units, Operation op) throws Exception {
+        if(!name.contains(filter))
+            return;
+        for(int i=0; i<warmups; i++)
+            iteration(op);
+        double[] scores = new double[iterations];
+        double allocated = 0;
+        for(int i=0; i<iterations; i++) {
+            double[] r = iteration(op);
+            scores[i] = r[0];
+            allocated += r[1];
+        }
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double var = 0;
+        for(double s: scores)
+            var += (s-mean)*(s-mean);
+        double error = iterations > 1 ? 3.29 * Math.sqrt(var/(iterations-1)) / Math.sqrt(iterations) : Double.NaN;
+        System.out.printf("%-40s %-24s %6d %14.1f %12.1f %-10s %14.1f%n", name, params, iterations, mean, error, units, allocated/iterations);
+    }
+
+    /**
+     * Runs an operation repeatedly for at least MIN_ITERATION_NANOS
+     * @return the throughput in units per second and the bytes allocated per operation
+     */
+    private static double[] iteration(Operation op) throws Exception {
+        long ops = 0, units = 0;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime(), elapsed;
+        do {
+            units += op.run();
+            ops++;
+        } while((elapsed=System.nanoTime()-start) < MIN_ITERATION_NANOS);
+        bytes = allocatedBytes() - bytes;
+        return new double[]{units * 1e9 / elapsed, bytes < 0 ? Double.NaN : (double) bytes / ops};
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    private static String write(String program) throws IOException {
+        Path p = Files.createTempFile("turing", ".txt");
+        generated.add(p);
+        Files.write(p, program.getBytes(StandardCharsets.UTF_8));
+        return p.toString();
+    }
+
+    private static String repeat(char c, int n) {
+        char[] ret = new char[n];
+        Arrays.fill(ret, c);
+        return new String(ret);
+    }
+
+    /**
+     * A 2-tapes machine which counts in binary on the second tape (least significant bit first) the symbols of the input: it runs about 2n log(n) steps
+     */
+    private static String binaryCounter() {
+        return "1\n"
+            + "s; (>, >); (s, >, R, >, R)\n"
+            + "s; (1, 1); (s, 1, -, 0, R)\n"
+            + "s; (1, 0); (r, 1, -, 1, L)\n"
+            + "s; (1, _); (r, 1, -, 1, L)\n"
+            + "s; (_, 0); (H, _, -, 0, -)\n"
+            + "s; (_, 1); (H, _, -, 1, -)\n"
+            + "s; (_, _); (H, _, -, _, -)\n"
+            + "r; (1, 0); (r, 1, -, 0, L)\n"
+            + "r; (1, 1); (r, 1, -, 1, L)\n"
+            + "r; (1, >); (s, 1, R, >, R)\n";
+    }
+
+    /**
+     * A 1-tape machine which walks back and forth over the input, marking its last symbol at every pass: it runs about n^2 steps, nearly all of them in self-loops
+     */
+    private static String sweeper() {
+        return "1\n"
+            + "s; (>); (r, >, R)\n"
+            + "r; (1); (r, 1, R)\n"
+            + "r; (x); (b, x, L)\n"
+            + "r; (_); (b, _, L)\n"
+            + "b; (1); (l, x, L)\n"
+            + "b; (>); (H, >, -)\n"
+            + "l; (1); (l, 1, L)\n"
+            + "l; (>); (r, >, R)\n";
+    }
+
+    /**
+     * A 1-tape machine with <i>rules</i> rules, which walks through <i>rules</i> states
+     */
+    private static String counterFamily(int rules) {
+        StringBuilder sb = new StringBuilder("1\n");
+        sb.append("s; (>); (q0, >, R)\n");
+        for(int i=0; i<rules-1; i++)
+            sb.append("q").append(i).append("; (1); (q").append(i+1).append(", 1, -)\n");
+        return sb.toString();
+    }
+
+    /**
+     * A machine with <i>tapes</i> tapes which, for every symbol of the input, guesses one of <i>branching</i> symbols and writes it on all the other tapes
+     */
+    private static String guessFamily(int tapes, int branching) {
+        StringBuilder sb = new StringBuilder("1\n");
+        sb.append("s; (").append(tuple(tapes, ">", null)).append("); (s, ").append(tuple(tapes, ">", "R")).append(")\n");
+        for(int d=0; d<branching; d++)
+            sb.append("s; (").append(tuple(tapes, "1", "_", null)).append("); (s, ").append(tuple(tapes, "1", String.valueOf(d), "R")).append(")\n");
+        sb.append("s; (").append(tuple(tapes, "_", null)).append("); (H, ").append(tuple(tapes, "_", "-")).append(")\n");
+        return sb.toString();
+    }
+
+    /**
+     * A 1-tape machine which walks to the end of the input, then goes back for <i>guesses</i> symbols writing on each one of <i>branching</i> symbols: every branch differs from its siblings in a single cell of a long tape
+     */
+    private static String forkFamily(int guesses, int branching) {
+        StringBuilder sb = new StringBuilder("1\n");
+        sb.append("s; (>); (s, >, R)\n");
+        sb.append("s; (1); (s, 1, R)\n");
+        sb.append("s; (_); (g0, _, L)\n");
+        for(int i=0; i<guesses; i++)
+            for(int d=0; d<branching; d++)
+                sb.append("g").append(i).append("; (1); (g").append(i+1).append(", ").append(d).append(", L)\n");
+        sb.append("g").append(guesses).append("; (1); (H, 1, -)\n");
+        return sb.toString();
+    }
+
+    private static String tuple(int tapes, String symbol, String direction) {
+        return tuple(tapes, symbol, symbol, direction);
+    }
+
+    private static String tuple(int tapes, String first, String others, String direction) {
+        StringBuilder sb = new StringBuilder();
+        for(int i=0; i<tapes; i++) {
+            if(i > 0)
+                sb.append(", ");
+            sb.append(i == 0 ? first : others);
+            if(direction != null)
+                sb.append(", ").append(direction);
+        }
+        return sb.toString();
+    }
+}